@@ -10,11 +10,14 @@ import java.awt.*;
 public class AdminDashboard extends JFrame {
     SetBackgroundImage adminDashboardBackground;
     JPanel mainDashboard;
+    LiveMetrics liveMetrics;
+    LiveMetricsPanel liveMetricsPanel;
+    LiveMetricsFeed liveMetricsFeed;
     JMenuBar menuBar;
     JMenu userMenu, membershipMenu, gameMenu, fileMenu, membersMenu, groupMenu, sportsMenu, storeMenu, transactionsMenu, eventsMenu, scheduleMenu, reportsMenu, helpMenu, profileMenu;
     JMenuItem createUserItem, editUserItem, deactivateUserItem;
     JMenuItem approveMembershipItem, renewMembershipItem, manageFeesItem;
-    JMenuItem addGameItem, editGameItem, removeGameItem;
+    JMenuItem addGameItem, editGameItem, removeGameItem, standingsItem;
 
     /**
      * Instantiates a new Admin dashboard.
@@ -52,6 +55,16 @@ public class AdminDashboard extends JFrame {
         int height = this.getHeight();
         mainDashboard.setPreferredSize(new Dimension(width, (height - 100)));
 
+        // Live KPIs: loaded once, then kept current from change streams with at most 4 repaints per second;
+        // terminals of a club server poll the server instead of opening their own change stream
+        liveMetrics = new LiveMetrics();
+        liveMetricsPanel = new LiveMetricsPanel(liveMetrics, 4);
+        liveMetricsPanel.setPreferredSize(new Dimension(width - 200, 150));
+        liveMetricsFeed = Constant.dotenv.get("CLUB_SERVER_URL", "").isBlank()
+                ? LiveMetricsFeed.fromMongo(Constant.getDatabase(), liveMetrics)
+                : LiveMetricsFeed.fromService(Constant.getClubService(), liveMetrics,
+                Long.parseLong(Constant.dotenv.get("LIVE_METRICS_POLL_SECONDS", "5")) * 1000);
+
         // Create the menu bar
         menuBar = new JMenuBar() {
             @Override
@@ -81,6 +94,22 @@ public class AdminDashboard extends JFrame {
         addGameItem = new JMenuItem("Add Game");
         editGameItem = new JMenuItem("Edit Game");
         removeGameItem = new JMenuItem("Remove Game");
+        standingsItem = new JMenuItem("Standings");
+        addGameItem.addActionListener(e -> GameDialogs.addGame(this));
+        editGameItem.addActionListener(e -> GameDialogs.editGame(this));
+        removeGameItem.addActionListener(e -> GameDialogs.removeGame(this));
+        standingsItem.addActionListener(e -> GameDialogs.showStandings(this));
+    }
+
+    /**
+     * Stops the live metrics feed along with the frame.
+     */
+    @Override
+    public void dispose() {
+        if (liveMetricsFeed != null) {
+            liveMetricsFeed.close();
+        }
+        super.dispose();
     }
 
     private void addComponentsToFrame() {
@@ -95,12 +124,15 @@ public class AdminDashboard extends JFrame {
         gameMenu.add(addGameItem);
         gameMenu.add(editGameItem);
         gameMenu.add(removeGameItem);
+        gameMenu.add(standingsItem);
 
         menuBar.add(userMenu);
         menuBar.add(membershipMenu);
         menuBar.add(gameMenu);
 
         adminDashboardBackground.add(menuBar, BorderLayout.NORTH);
+        mainDashboard.add(liveMetricsPanel);
+
         adminDashboardBackground.add(mainDashboard, BorderLayout.SOUTH);
     }
 }
@@ -0,0 +1,159 @@
+package org.club;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Build-time step that pre-scales the image resources to the sizes the UI draws them at.
+ * <p>
+ * For every image and display size in {@link #VARIANTS} it writes a 1x variant and a 2x variant for HiDPI
+ * screens (the 2x variant is skipped when the source is not large enough to provide it).
+ * Icons are written as PNG with the fastest deflate level, which decodes much faster than the maximum
+ * compression of the originals, and the photographic background as JPEG.
+ * At runtime {@link ImageAssets} combines the variants into a {@link java.awt.image.BaseMultiResolutionImage},
+ * so the full-size originals are never decoded and nothing is rescaled during startup.
+ * <p>
+ * The step runs in the {@code process-classes} phase (see {@code pom.xml}) and only rewrites a variant when
+ * its source is newer.
+ * <p>
+ * Usage: {@code AssetPipeline <source image directory> <output directory>}
+ */
+public class AssetPipeline {
+    /**
+     * The display sizes ({@code {width, height}}) at which each image resource is drawn.
+     */
+    static final Map<String, int[][]> VARIANTS = new LinkedHashMap<>();
+
+    static {
+        VARIANTS.put("background.jpg", new int[][]{{500, 500}, {1900, 1000}});
+        VARIANTS.put("club.png", new int[][]{{16, 16}, {32, 32}, {48, 48}, {64, 64}, {170, 170}});
+        VARIANTS.put("user.png", new int[][]{{60, 60}});
+        VARIANTS.put("password.png", new int[][]{{60, 60}});
+        VARIANTS.put("show.png", new int[][]{{20, 20}});
+        VARIANTS.put("hide.png", new int[][]{{20, 20}});
+        VARIANTS.put("forgot.png", new int[][]{{20, 20}});
+    }
+
+    /**
+     * Returns the file name of a pre-scaled variant.
+     *
+     * @param name   The source image name, for example {@code user.png}.
+     * @param width  The display width.
+     * @param height The display height.
+     * @param scale  The pixel scale, 1 or 2.
+     * @return The variant file name, for example {@code user-60x60@2x.png}.
+     */
+    static String variantName(String name, int width, int height, int scale) {
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot) + "-" + width + "x" + height + (scale == 1 ? "" : "@" + scale + "x") + name.substring(dot);
+    }
+
+    /**
+     * The entry point of the asset pipeline.
+     *
+     * @param args The source image directory and the output directory.
+     * @throws IOException If an image cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AssetPipeline <source image directory> <output directory>");
+            System.exit(1);
+        }
+        File sourceDirectory = new File(args[0]);
+        File outputDirectory = new File(args[1]);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + outputDirectory);
+        }
+
+        int written = 0;
+        for (Map.Entry<String, int[][]> entry : VARIANTS.entrySet()) {
+            File source = new File(sourceDirectory, entry.getKey());
+            BufferedImage original = null;
+            for (int[] size : entry.getValue()) {
+                for (int scale = 1; scale <= 2; scale++) {
+                    int width = size[0] * scale;
+                    int height = size[1] * scale;
+                    File target = new File(outputDirectory, variantName(entry.getKey(), size[0], size[1], scale));
+                    if (target.exists() && target.lastModified() >= source.lastModified()) {
+                        continue;
+                    }
+                    if (original == null) {
+                        original = ImageIO.read(source);
+                        if (original == null) {
+                            throw new IOException("Cannot decode " + source);
+                        }
+                    }
+                    // A 2x variant is only useful if the source has more pixels than the 1x variant
+                    if (scale > 1 && original.getWidth() <= size[0] && original.getHeight() <= size[1]) {
+                        continue;
+                    }
+                    write(scale(original, width, height), target);
+                    written++;
+                }
+            }
+        }
+        System.out.println("Asset pipeline wrote " + written + " image variants to " + outputDirectory);
+    }
+
+    /**
+     * Scales an image with repeated halving followed by one bilinear step, which keeps the quality of
+     * {@link Image#SCALE_SMOOTH} at a fraction of its cost.
+     *
+     * @param source The source image.
+     * @param width  The target width.
+     * @param height The target height.
+     * @return The scaled image.
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        boolean opaque = source.getTransparency() == Transparency.OPAQUE;
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = currentWidth / 2 >= width ? currentWidth / 2 : width;
+            currentHeight = currentHeight / 2 >= height ? currentHeight / 2 : height;
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    /**
+     * Writes a variant: JPEG for the opaque photographic background, fast-deflate PNG for everything else.
+     */
+    private static void write(BufferedImage image, File target) throws IOException {
+        boolean jpeg = target.getName().endsWith(".jpg");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(jpeg ? "jpeg" : "png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // JPEG: visually lossless; PNG: the deflate level is 9 * (1 - quality), so 0.85 selects level 1
+            param.setCompressionQuality(jpeg ? 0.9f : 0.85f);
+        }
+        File temporary = new File(target.getPath() + ".tmp");
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(temporary)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        if (!temporary.renameTo(target)) {
+            throw new IOException("Cannot write " + target);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.club;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless benchmark of concurrent checkouts when most sales hit a few hot items.
+ * <p>
+ * The benchmark runs twice: first with every item's stock in a single document, then with the stock of the
+ * hot items split across sub-counters, and prints checkouts per second, latency percentiles and, against
+ * MongoDB, the number of retried transactions for both runs.
+ * Every run starts from freshly generated items with plenty of stock, so sales never run out.
+ * <p>
+ * With {@code --target memory} (the default) it runs against a {@link MemoryCheckoutService}.
+ * With {@code --target mongo} it runs against a {@link MongoCheckoutService} in a scratch database, which is
+ * dropped and refilled before each run; the cluster must support transactions.
+ * The benchmark refuses to run against the club database named by {@code MONGO_DATABASE} unless
+ * {@code --force true} is given.
+ * <p>
+ * Usage: {@code CheckoutBenchmark [--target memory|mongo] [--database NAME] [--terminals N] [--seconds N]
+ * [--items N] [--hot N] [--hot-share PERCENT] [--shards N] [--attempts N] [--force true]}
+ */
+public class CheckoutBenchmark {
+    private static final int STOCK = 10_000_000;
+
+    /**
+     * The entry point of the benchmark.
+     *
+     * @param args The command-line options described in the class documentation.
+     * @throws InterruptedException If the benchmark is interrupted while waiting for the terminals.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = DataGenerator.parseOptions(args);
+        int terminals = Integer.parseInt(options.getOrDefault("terminals", "64"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int items = Integer.parseInt(options.getOrDefault("items", "200"));
+        int hot = Integer.parseInt(options.getOrDefault("hot", "3"));
+        int hotShare = Integer.parseInt(options.getOrDefault("hot-share", "80"));
+        int shards = Integer.parseInt(options.getOrDefault("shards", "8"));
+        int attempts = Integer.parseInt(options.getOrDefault("attempts", "5"));
+        boolean mongo = "mongo".equals(options.get("target"));
+        String databaseName = options.getOrDefault("database", "checkout_benchmark");
+        if (mongo && databaseName.equals(Constant.database) && !Boolean.parseBoolean(options.get("force"))) {
+            System.err.println("Refusing to drop the club database " + databaseName
+                    + "; choose another --database or pass --force true");
+            return;
+        }
+
+        for (int shardCount : new int[]{1, shards}) {
+            TransactionRunner transactions = null;
+            CheckoutService service;
+            if (mongo) {
+                MongoDatabase database = Constant.getMongoClient().getDatabase(databaseName);
+                database.drop();
+                fill(DataGenerator.mongoSink(database), items);
+                transactions = new TransactionRunner(Constant.getMongoClient(), attempts);
+                service = new MongoCheckoutService(database, transactions, new ShardedCounter(database, transactions, 1000));
+            } else {
+                InMemoryStore store = new InMemoryStore();
+                fill(DataGenerator.memorySink(store), items);
+                service = new MemoryCheckoutService(store, 1000);
+            }
+
+            try (service) {
+                if (shardCount > 1) {
+                    for (int i = 0; i < hot; i++) {
+                        service.shard(DataGenerator.sku(i), shardCount);
+                    }
+                }
+                System.out.printf("%n%s: %d terminals, %d of %d items take %d%% of sales, %s%n",
+                        mongo ? "MongoDB" : "In-memory", terminals, hot, items, hotShare,
+                        shardCount > 1 ? shardCount + " sub-counters per hot item" : "unsharded");
+                run(service, transactions, terminals, Duration.ofSeconds(seconds), items, hot, hotShare);
+            }
+        }
+    }
+
+    /**
+     * Drives checkouts from the given number of terminals and prints the results.
+     */
+    private static void run(CheckoutService service, TransactionRunner transactions, int terminals, Duration duration,
+                            int items, int hot, int hotShare) throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        LongAdder checkouts = new LongAdder();
+        Instant end = Instant.now().plus(duration);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < terminals; t++) {
+                executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (Instant.now().isBefore(end)) {
+                        String sku = DataGenerator.sku(random.nextInt(100) < hotShare
+                                ? random.nextInt(hot)
+                                : hot + random.nextInt(Math.max(1, items - hot)));
+                        long begin = System.nanoTime();
+                        try {
+                            service.checkout("member" + random.nextInt(10_000), sku, 1);
+                            recorder.record("checkout", System.nanoTime() - begin);
+                            checkouts.increment();
+                        } catch (RuntimeException e) {
+                            recorder.recordError("checkout");
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long sold = 0;
+        for (int i = 0; i < items; i++) {
+            sold += STOCK - service.stock(DataGenerator.sku(i));
+        }
+        System.out.printf("%,.0f checkouts/s (%,d in %.1f s, stock consistent: %b)%n",
+                checkouts.sum() / seconds, checkouts.sum(), seconds, sold == checkouts.sum());
+        if (transactions != null) {
+            System.out.printf("%,d transactions retried%n", transactions.retries());
+        }
+        System.out.println(recorder.report());
+    }
+
+    private static void fill(DataGenerator.BulkSink sink, int items) {
+        try (DataGenerator generator = new DataGenerator(sink, 1000, 1)) {
+            generator.generate("item", items, (random, index) -> DataGenerator.item(random, index).append("stock", STOCK));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.club;
+
+import org.bson.Document;
+
+/**
+ * Checkout at the club store: a sale decrements the item's stock, records the sale transaction and charges
+ * the member's ledger, all or nothing.
+ * <p>
+ * {@link MongoCheckoutService} runs each checkout as a multi-document transaction, while
+ * {@link MemoryCheckoutService} is an in-process stand-in used for benchmarks.
+ * Both keep the stock of hot items, such as match balls on game day, in several sub-counters so concurrent
+ * sales of the same item do not serialise on one document.
+ */
+public interface CheckoutService extends AutoCloseable {
+    /**
+     * Sells an item to a member.
+     *
+     * @param username The buying member's username.
+     * @param sku      The item SKU.
+     * @param quantity The number of items sold.
+     * @return The key of the recorded sale transaction.
+     * @throws IllegalArgumentException If the item does not exist.
+     * @throws IllegalStateException    If the item does not have enough stock left.
+     */
+    String checkout(String username, String sku, int quantity);
+
+    /**
+     * Records a sale that was already confirmed at the counter, such as one shipped from the
+     * {@link TransactionJournal}: the stock is decremented, the sale is stored under its key and the member's
+     * ledger is charged, all or nothing.
+     * <p>
+     * The goods have already been handed over, so the sale is never refused.
+     * If the item does not have enough stock left, what is left is taken and the missing quantity is stored on
+     * the sale as {@code stockShortfall}, so the discrepancy can be traced instead of driving the stock negative.
+     * Recording the same key again has no effect, so a batch that is shipped twice is only applied once.
+     *
+     * @param key  The idempotency key of the sale, stored as its {@code _id}.
+     * @param sale The sale, with {@code date}, {@code member}, {@code sku}, {@code quantity} and {@code amount}.
+     */
+    void record(String key, Document sale);
+
+    /**
+     * Returns the current stock of an item.
+     *
+     * @param sku The item SKU.
+     * @return The stock, or 0 if the item does not exist.
+     */
+    long stock(String sku);
+
+    /**
+     * Splits the stock of a hot item across the given number of sub-counters.
+     *
+     * @param sku    The item SKU.
+     * @param shards The number of sub-counters.
+     * @throws IllegalArgumentException If the item does not exist.
+     */
+    void shard(String sku, int shards);
+
+    /**
+     * Stops the background rebalancing of the sub-counters.
+     */
+    @Override
+    void close();
+}
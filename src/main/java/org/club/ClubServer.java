@@ -0,0 +1,300 @@
+package org.club;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless backend that serves the front-desk operations to many Swing terminals over a local HTTP/JSON API.
+ * <p>
+ * The server wraps a single {@link ClubService} (normally a {@link LocalClubService}), so every terminal shares
+ * one MongoDB connection pool, one catalogue cache and one transaction journal, and only the server needs the
+ * database credentials.
+ * Each request is handled on its own virtual thread.
+ * <p>
+ * Every request must carry the shared secret as {@code Authorization: Bearer <token>}; others are answered
+ * with 401. By default the server only listens on the loopback interface.
+ * <p>
+ * Endpoints (all bodies are JSON documents):
+ * <ul>
+ *     <li>{@code POST /api/auth} with {@code {username, password, collection}} returns {@code {authenticated}}</li>
+ *     <li>{@code POST /api/login} with {@code {username, password}} returns {@code {role}}: {@code admin},
+ *     {@code member} or {@code null}</li>
+ *     <li>{@code GET /api/members/{username}} returns the member, or 404</li>
+ *     <li>{@code GET /api/items} returns {@code {items: [...]}}</li>
+ *     <li>{@code GET /api/reference/{collection}} returns {@code {documents: [...]}} for {@code item},
+ *     {@code sport} or {@code fee}</li>
+ *     <li>{@code POST /api/sales} with {@code {username, sku, quantity}} returns {@code {key}}</li>
+ *     <li>{@code GET /api/reports/sales?since=MILLIS} (or {@code ?days=N}, default 7 days) returns
+ *     {@code {total, count}}</li>
+ *     <li>{@code GET /api/metrics} returns the live dashboard KPIs, see {@link LiveMetrics#toDocument()}</li>
+ *     <li>{@code GET /api/cache/stats} returns the near-cache metrics, when the server has a near-cache</li>
+ * </ul>
+ * Terminals use it by setting {@code CLUB_SERVER_URL} and {@code CLUB_SERVER_TOKEN} in their {@code .env};
+ * see {@link RemoteClubService}.
+ */
+public class ClubServer {
+    /**
+     * Thrown by a route to answer with a specific HTTP status.
+     */
+    private static class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * A request handler producing a JSON response body.
+     */
+    private interface Route {
+        Document handle(HttpExchange exchange) throws IOException;
+    }
+
+    private final ClubService service;
+    private final HttpServer server;
+    private final byte[] token;
+
+    /**
+     * Creates a server for the given service, bound to the given address.
+     *
+     * @param service The service handling the operations.
+     * @param address The address and port to listen on.
+     * @param token   The shared secret every request must present as {@code Authorization: Bearer <token>}.
+     * @throws IOException If the address cannot be bound.
+     */
+    public ClubServer(ClubService service, InetSocketAddress address, String token) throws IOException {
+        this(service, address, token, null);
+    }
+
+    /**
+     * Creates a server for the given service, bound to the given address, that also reports near-cache metrics.
+     *
+     * @param service        The service handling the operations.
+     * @param address        The address and port to listen on.
+     * @param token          The shared secret every request must present as {@code Authorization: Bearer <token>}.
+     * @param referenceCache The near-cache behind the service, or {@code null} if there is none.
+     * @throws IOException              If the address cannot be bound.
+     * @throws IllegalArgumentException If the token is blank.
+     */
+    public ClubServer(ClubService service, InetSocketAddress address, String token, NearCache referenceCache)
+            throws IOException {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("The club server needs a token");
+        }
+        this.service = service;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+
+        route("/api/auth", "POST", this::authenticate);
+        route("/api/login", "POST", this::login);
+        route("/api/members/", "GET", this::findMember);
+        route("/api/items", "GET", exchange -> new Document("items", service.listItems()));
+        route("/api/reference/", "GET", this::referenceData);
+        if (referenceCache != null) {
+            route("/api/cache/stats", "GET", exchange -> referenceCache.stats());
+        }
+        route("/api/sales", "POST", this::recordSale);
+        route("/api/reports/sales", "GET", this::salesReport);
+        route("/api/metrics", "GET", exchange -> service.liveMetrics());
+    }
+
+    /**
+     * Starts the server with a {@link LocalClubService}, after bringing the schema up to date with
+     * {@link InitialSetup}.
+     * <p>
+     * The server listens on {@code CLUB_SERVER_HOST} (default {@code 127.0.0.1}, so only the local machine can
+     * connect) and {@code CLUB_SERVER_PORT} (default 8085), and only answers requests carrying
+     * {@code CLUB_SERVER_TOKEN}, which must be set.
+     *
+     * @param args The command-line arguments (unused).
+     * @throws IOException           If the port cannot be bound.
+     * @throws IllegalStateException If {@code CLUB_SERVER_TOKEN} is not set.
+     */
+    public static void main(String[] args) throws IOException {
+        String token = Constant.dotenv.get("CLUB_SERVER_TOKEN", "");
+        if (token.isBlank()) {
+            throw new IllegalStateException("Set CLUB_SERVER_TOKEN before starting the club server");
+        }
+        Main.setUpSchema();
+        String host = Constant.dotenv.get("CLUB_SERVER_HOST", "");
+        int port = Integer.parseInt(Constant.dotenv.get("CLUB_SERVER_PORT", "8085"));
+        InetSocketAddress address = new InetSocketAddress(host.isBlank() ? "127.0.0.1" : host, port);
+        NearCache referenceCache = Constant.getNearCache();
+        ClubService service = new LocalClubService(Constant.getDatabase(), Constant::getTransactionJournal, referenceCache,
+                Constant::getEventHistory, Constant::getCredentialService);
+        new ClubServer(service, address, token, referenceCache).start();
+        System.out.println("Club server listening on " + address);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting up to the given number of seconds for running requests.
+     *
+     * @param delaySeconds The maximum time to wait for running requests.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+    }
+
+    private Document authenticate(HttpExchange exchange) throws IOException {
+        Document body = readBody(exchange);
+        String collection = body.getString("collection");
+        if (!"admin".equals(collection) && !"member".equals(collection)) {
+            throw new HttpError(400, "collection must be admin or member");
+        }
+        try {
+            return new Document("authenticated",
+                    service.authenticate(body.getString("username"), body.getString("password"), collection));
+        } catch (IllegalStateException e) {
+            throw new HttpError(503, e.getMessage());
+        }
+    }
+
+    private Document login(HttpExchange exchange) throws IOException {
+        Document body = readBody(exchange);
+        try {
+            return new Document("role", service.login(body.getString("username"), body.getString("password")));
+        } catch (IllegalStateException e) {
+            throw new HttpError(503, e.getMessage());
+        }
+    }
+
+    private Document findMember(HttpExchange exchange) {
+        String username = URLDecoder.decode(exchange.getRequestURI().getPath().substring("/api/members/".length()),
+                StandardCharsets.UTF_8);
+        Document member = service.findMember(username);
+        if (member == null) {
+            throw new HttpError(404, "No member " + username);
+        }
+        return member;
+    }
+
+    private Document referenceData(HttpExchange exchange) {
+        String collection = exchange.getRequestURI().getPath().substring("/api/reference/".length());
+        try {
+            return new Document("documents", service.referenceData(collection));
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(404, e.getMessage());
+        }
+    }
+
+    private Document recordSale(HttpExchange exchange) throws IOException {
+        Document body = readBody(exchange);
+        Number quantity;
+        try {
+            quantity = body.get("quantity", Number.class);
+        } catch (ClassCastException e) {
+            throw new HttpError(400, "quantity must be a number");
+        }
+        if (body.getString("username") == null || body.getString("sku") == null || quantity == null) {
+            throw new HttpError(400, "username, sku and quantity are required");
+        }
+        try {
+            String key = service.recordSale(body.getString("username"), body.getString("sku"), quantity.intValue());
+            return new Document("key", key);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, e.getMessage());
+        }
+    }
+
+    private Document salesReport(HttpExchange exchange) {
+        Date since = Date.from(Instant.now().minus(Duration.ofDays(7)));
+        String query = exchange.getRequestURI().getQuery();
+        for (String parameter : query == null ? new String[0] : query.split("&")) {
+            try {
+                if (parameter.startsWith("since=")) {
+                    since = new Date(Long.parseLong(parameter.substring("since=".length())));
+                } else if (parameter.startsWith("days=")) {
+                    int days = Integer.parseInt(parameter.substring("days=".length()));
+                    if (days < 0) {
+                        throw new HttpError(400, "days must not be negative");
+                    }
+                    since = Date.from(Instant.now().minus(Duration.ofDays(days)));
+                }
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Malformed " + parameter);
+            }
+        }
+        return service.salesReport(since);
+    }
+
+    /**
+     * Registers a route that only accepts the given method and writes its result as JSON.
+     * Errors are reported as {@code {error}} with the matching status code.
+     */
+    private void route(String path, String method, Route route) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                int status = 200;
+                Document response;
+                try {
+                    if (!isAuthorized(exchange)) {
+                        exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                        throw new HttpError(401, "Missing or wrong bearer token");
+                    }
+                    if (!method.equals(exchange.getRequestMethod())) {
+                        throw new HttpError(405, "Use " + method);
+                    }
+                    response = route.handle(exchange);
+                } catch (HttpError e) {
+                    status = e.status;
+                    response = new Document("error", e.getMessage());
+                } catch (RuntimeException e) {
+                    System.err.println("Request " + exchange.getRequestURI() + " failed: " + e.getMessage());
+                    status = 500;
+                    response = new Document("error", e.getMessage());
+                }
+                byte[] json = response.toJson().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, json.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(json);
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks the bearer token of a request, in time independent of where it differs.
+     */
+    private boolean isAuthorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(header.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8), token);
+    }
+
+    private static Document readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                return Document.parse(json);
+            } catch (RuntimeException e) {
+                throw new HttpError(400, "Malformed JSON body");
+            }
+        }
+    }
+}
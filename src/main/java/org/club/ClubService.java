@@ -0,0 +1,89 @@
+package org.club;
+
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The core operations of the front desk: authentication, member lookup, stock and sales, and reports.
+ * <p>
+ * The Swing screens talk to the club through this interface.
+ * {@link LocalClubService} runs the operations directly against MongoDB, while {@link RemoteClubService}
+ * forwards them to a shared {@link ClubServer}, so many terminals can share one connection pool and cache.
+ * Use {@link Constant#getClubService()} to obtain the configured implementation.
+ */
+public interface ClubService {
+    /**
+     * Checks a username and password against the given user collection.
+     *
+     * @param username   The entered username.
+     * @param password   The entered password.
+     * @param collection The user collection, {@code admin} or {@code member}.
+     * @return True if the credentials are valid.
+     */
+    boolean authenticate(String username, String password, String collection);
+
+    /**
+     * Logs a user in as an administrator or a member, verifying a single password hash.
+     *
+     * @param username The entered username.
+     * @param password The entered password.
+     * @return {@code admin} or {@code member}, or {@code null} if the credentials are invalid.
+     * @throws IllegalStateException If too many logins are in progress.
+     */
+    String login(String username, String password);
+
+    /**
+     * Looks up a member by username.
+     *
+     * @param username The member's username.
+     * @return The member document without its password, or {@code null} if there is none.
+     */
+    Document findMember(String username);
+
+    /**
+     * Lists the items in the club store with their prices.
+     * The catalogue is served from a near-cache and does not carry the stock, which changes with every sale.
+     *
+     * @return The store items.
+     */
+    List<Document> listItems();
+
+    /**
+     * Lists a reference collection: the store catalogue ({@code item}), sports ({@code sport}) or fee
+     * schedules ({@code fee}).
+     * These rarely change and are served from a near-cache.
+     *
+     * @param collection One of {@link NearCache#REFERENCE_COLLECTIONS}.
+     * @return The documents of the collection.
+     * @throws IllegalArgumentException If the collection is not a reference collection.
+     */
+    List<Document> referenceData(String collection);
+
+    /**
+     * Records the sale of an item to a member and decrements its stock.
+     *
+     * @param username The buying member's username.
+     * @param sku      The item SKU.
+     * @param quantity The number of items sold.
+     * @return The idempotency key of the recorded sale transaction.
+     * @throws IllegalArgumentException If the item does not exist.
+     */
+    String recordSale(String username, String sku, int quantity);
+
+    /**
+     * Summarises the transactions recorded since the given date.
+     *
+     * @param since The start of the reporting period.
+     * @return A document with the {@code total} amount and the transaction {@code count}.
+     */
+    Document salesReport(Date since);
+
+    /**
+     * Returns the live dashboard KPIs as kept current by a {@link LiveMetricsFeed}.
+     *
+     * @return The metrics snapshot, see {@link LiveMetrics#toDocument()}.
+     */
+    Document liveMetrics();
+}
@@ -1,14 +1,16 @@
 package org.club;
 
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
 import io.github.cdimascio.dotenv.Dotenv;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.File;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * A utility class containing constants and helper methods for the sports club application.
@@ -28,6 +30,31 @@ public class Constant {
     /* Colors */
     static Color btnColor = new Color(90, 90, 189);
 
+    // Shared MongoDB client, created on first use and reused by every service in the process
+    private static MongoClient mongoClient;
+
+    // Local transaction journal, opened on first use
+    private static TransactionJournal transactionJournal;
+
+    // Transactional store checkout, applying the journalled sales, created on first use
+    private static CheckoutService checkoutService;
+
+    // Near-cache for the reference collections, created on first use
+    private static NearCache nearCache;
+
+    // Time-series history of transactions and attendance, created on first use
+    private static EventHistory eventHistory;
+
+    // Incremental league and scorer tables, loaded on first use
+    private static StandingsEngine standingsEngine;
+
+    // Password hashing and the verification pool, created on first use
+    private static PasswordHasher passwordHasher;
+    private static CredentialService credentialService;
+
+    // Front-desk operations, either local or forwarded to a shared club server
+    private static ClubService clubService;
+
 
     /**
      * Retrieves the MongoDB connection string used for database connectivity.
@@ -48,6 +75,201 @@ public class Constant {
         return connectionString;
     }
 
+    /**
+     * Retrieves the shared {@code sports_club_system} database handle.
+     *
+     * <p>
+     * The underlying MongoClient is created lazily on the first call and then reused, so every
+     * service in the process shares one connection pool instead of opening its own connections
+     * and TLS handshakes.
+     *
+     * @return The MongoDatabase named by the {@code MONGO_DATABASE} environment variable.
+     * @see MongoClients#create(String)
+     */
+    public static synchronized MongoDatabase getDatabase() {
+        return getMongoClient().getDatabase(database);
+    }
+
+    /**
+     * Retrieves the shared MongoClient, for operations that need a client session such as multi-document
+     * transactions.
+     *
+     * @return The shared MongoClient, created on the first call.
+     * @see #getDatabase()
+     */
+    public static synchronized MongoClient getMongoClient() {
+        if (mongoClient == null) {
+            mongoClient = MongoClients.create(connectionString);
+        }
+        return mongoClient;
+    }
+
+    /**
+     * Retrieves the shared local transaction journal used for store sales and fee payments.
+     *
+     * <p>
+     * The journal lives in the directory named by the {@code JOURNAL_DIR} environment variable
+     * (default {@code journal}) and ships its entries to the shared database in the background; store sales
+     * are applied through the {@link #getCheckoutService() checkout service}, which also updates the stock.
+     * It is closed by a shutdown hook so that queued appends are committed before the process exits.
+     *
+     * @return The shared TransactionJournal.
+     * @see TransactionJournal
+     */
+    public static synchronized TransactionJournal getTransactionJournal() {
+        if (transactionJournal == null) {
+            Path directory = Path.of(dotenv.get("JOURNAL_DIR", "journal"));
+            transactionJournal = TransactionJournal.open(directory,
+                    TransactionJournal.mongoSink(getDatabase(), getCheckoutService()));
+            Runtime.getRuntime().addShutdownHook(new Thread(transactionJournal::close, "journal-shutdown"));
+        }
+        return transactionJournal;
+    }
+
+    /**
+     * Retrieves the shared checkout service, which applies store sales to the stock, the sales and the ledger
+     * in MongoDB transactions.
+     *
+     * <p>
+     * Transactions that conflict are attempted up to {@code CHECKOUT_ATTEMPTS} times (default 5), and the
+     * sub-counters of hot items are rebalanced every minute.
+     *
+     * @return The shared CheckoutService.
+     * @see MongoCheckoutService
+     */
+    public static synchronized CheckoutService getCheckoutService() {
+        if (checkoutService == null) {
+            TransactionRunner transactions = new TransactionRunner(getMongoClient(),
+                    Integer.parseInt(dotenv.get("CHECKOUT_ATTEMPTS", "5")));
+            checkoutService = new MongoCheckoutService(getDatabase(), transactions,
+                    new ShardedCounter(getDatabase(), transactions, Duration.ofMinutes(1).toMillis()));
+        }
+        return checkoutService;
+    }
+
+    /**
+     * Retrieves the shared near-cache for the reference collections (store items, sports and fees).
+     *
+     * <p>
+     * The cache is configured from the environment: {@code NEAR_CACHE_MAX_ENTRIES} (default 10000),
+     * {@code NEAR_CACHE_TTL_SECONDS}, the expiry used while the change stream is down (default 60), and
+     * {@code NEAR_CACHE_STRICT}, which bypasses the cache entirely while the change stream is down
+     * (default false).
+     *
+     * @return The shared NearCache.
+     * @see NearCache
+     */
+    public static synchronized NearCache getNearCache() {
+        if (nearCache == null) {
+            nearCache = new NearCache(getDatabase(), NearCache.REFERENCE_COLLECTIONS,
+                    Integer.parseInt(dotenv.get("NEAR_CACHE_MAX_ENTRIES", "10000")),
+                    Long.parseLong(dotenv.get("NEAR_CACHE_TTL_SECONDS", "60")) * 1000,
+                    Boolean.parseBoolean(dotenv.get("NEAR_CACHE_STRICT", "false")));
+        }
+        return nearCache;
+    }
+
+    /**
+     * Retrieves the shared history of transactions and attendance, kept in MongoDB time-series collections.
+     *
+     * <p>
+     * Transactions move to the history once they are {@code HISTORY_SETTLE_HOURS} old (default 24), raw events
+     * are kept for {@code HISTORY_RETENTION_DAYS} (default 400) and complete months are rolled up every hour.
+     *
+     * @return The shared EventHistory.
+     * @see MongoEventHistory
+     */
+    public static synchronized EventHistory getEventHistory() {
+        if (eventHistory == null) {
+            eventHistory = new MongoEventHistory(getDatabase(),
+                    Duration.ofHours(Long.parseLong(dotenv.get("HISTORY_SETTLE_HOURS", "24"))),
+                    Integer.parseInt(dotenv.get("HISTORY_RETENTION_DAYS", "400")),
+                    Duration.ofHours(1).toMillis());
+        }
+        return eventHistory;
+    }
+
+    /**
+     * Retrieves the shared standings engine, which keeps the league and scorer tables of every competition.
+     *
+     * <p>
+     * Game changes are saved in transactions that are attempted up to {@code STANDINGS_ATTEMPTS} times
+     * (default 5) when several terminals record games at the same time.
+     *
+     * @return The shared StandingsEngine.
+     * @see StandingsEngine
+     */
+    public static synchronized StandingsEngine getStandingsEngine() {
+        if (standingsEngine == null) {
+            standingsEngine = new StandingsEngine(getDatabase(), new TransactionRunner(getMongoClient(),
+                    Integer.parseInt(dotenv.get("STANDINGS_ATTEMPTS", "5"))));
+        }
+        return standingsEngine;
+    }
+
+    /**
+     * Retrieves the shared password hasher.
+     *
+     * <p>
+     * New hashes use {@code PASSWORD_HASH_ITERATIONS} PBKDF2 iterations (default 600000); stored hashes with
+     * fewer iterations are upgraded at the next successful login.
+     *
+     * @return The shared PasswordHasher.
+     * @see PasswordHasher
+     */
+    public static synchronized PasswordHasher getPasswordHasher() {
+        if (passwordHasher == null) {
+            passwordHasher = new PasswordHasher(Integer.parseInt(dotenv.get("PASSWORD_HASH_ITERATIONS", "600000")));
+        }
+        return passwordHasher;
+    }
+
+    /**
+     * Retrieves the shared credential service used to check logins.
+     *
+     * <p>
+     * Passwords are verified on {@code CREDENTIAL_THREADS} threads (default: the number of cores), and
+     * successful checks are remembered for {@code CREDENTIAL_CACHE_SECONDS} (default 60), up to
+     * {@code CREDENTIAL_CACHE_MAX_ENTRIES} checks (default 10000).
+     *
+     * @return The shared CredentialService.
+     * @see CredentialService
+     */
+    public static synchronized CredentialService getCredentialService() {
+        if (credentialService == null) {
+            String threads = dotenv.get("CREDENTIAL_THREADS", "");
+            credentialService = new CredentialService(Constant::getDatabase, getPasswordHasher(),
+                    threads.isBlank() ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads),
+                    Long.parseLong(dotenv.get("CREDENTIAL_CACHE_SECONDS", "60")) * 1000,
+                    Integer.parseInt(dotenv.get("CREDENTIAL_CACHE_MAX_ENTRIES", "10000")));
+        }
+        return credentialService;
+    }
+
+    /**
+     * Retrieves the club service used by the Swing screens.
+     *
+     * <p>
+     * When the {@code CLUB_SERVER_URL} environment variable is set, every operation is forwarded to that
+     * {@link ClubServer}, authenticated with {@code CLUB_SERVER_TOKEN}, so the terminal shares the server's
+     * connection pool and cache and needs no database credentials.
+     * Otherwise the operations run directly against the shared database.
+     *
+     * @return The shared ClubService.
+     * @see RemoteClubService
+     * @see LocalClubService
+     */
+    public static synchronized ClubService getClubService() {
+        if (clubService == null) {
+            String serverUrl = dotenv.get("CLUB_SERVER_URL", "");
+            clubService = serverUrl.isBlank()
+                    ? new LocalClubService(getDatabase(), Constant::getTransactionJournal, getNearCache(),
+                    Constant::getEventHistory, Constant::getCredentialService)
+                    : new RemoteClubService(serverUrl, dotenv.get("CLUB_SERVER_TOKEN", ""));
+        }
+        return clubService;
+    }
+
 
     /**
      * Resizes a given ImageIcon to the specified width and height.
@@ -253,35 +475,16 @@ public class Constant {
      *
      * @param frame The JFrame for which to set the icon.
      *              <p>
-     *              This method attempts to set a custom icon for the provided JFrame by loading
-     *              an image file named "club.png" from the specified resource path.
-     *              If successful,
-     *              the loaded image is set as the icon for the JFrame using the {@code setIconImage}
-     *              method.
-     *              If the image file cannot be loaded or an IOException occurs during the
-     *              process, a RuntimeException is thrown with details of the exception.
-     *              <p>
-     *              Note: The image file "club.png" is expected to be located in the "src/main/resources/images/"
-     *              directory.
-     *              Ensure that the file is present at the specified path for the icon to be set successfully.
-     * @throws RuntimeException If an IOException occurs while attempting to load the image
-     *                          or set it as the frame icon.
-     *                          The RuntimeException includes details of the exception.
-     * @see JFrame#setIconImage(java.awt.Image)
-     * @see ImageIO#read(java.io.File)
+     *              This method sets the club logo ("club.png") as the icon of the provided JFrame.
+     *              The logo is supplied in every size the window system may ask for (title bar, task bar,
+     *              window switcher) from the variants pre-scaled at build time, so the platform picks the
+     *              closest size instead of shrinking the full-size image.
+     * @see JFrame#setIconImages(java.util.List)
+     * @see ImageAssets#sizes(String)
      */
     public static void setFrameIcon(JFrame frame) {
         /* Set icon for the frame */
-        try {
-            // Load the image file from the specified resource path
-            Image imageIcon = ImageIO.read(new File("src/main/resources/images/club.png"));
-
-            // Set the loaded image as the icon for the JFrame
-            frame.setIconImage(imageIcon);
-        } catch (IOException e) {
-            // Throw a RuntimeException with details of the exception if an error occurs
-            throw new RuntimeException(e);
-        }
+        frame.setIconImages(ImageAssets.sizes("club.png"));
     }
 
 }
@@ -0,0 +1,98 @@
+package org.club;
+
+import com.mongodb.client.MongoDatabase;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless benchmark of password verification through a {@link CredentialService}, without a database.
+ * <p>
+ * It first verifies fresh PBKDF2 hashes with the cache disabled, on one verification thread and then on one
+ * thread per core, and prints verifications per second in total and per thread, with latency percentiles.
+ * It then repeats the same credentials with the cache enabled to show the cost of a cached login.
+ * Each run keeps twice as many logins in flight as there are verification threads.
+ * <p>
+ * Usage: {@code CredentialBenchmark [--iterations N] [--seconds N] [--users N] [--threads N]}
+ */
+public class CredentialBenchmark {
+    /**
+     * The entry point of the benchmark.
+     *
+     * @param args The command-line options described in the class documentation.
+     * @throws InterruptedException If the benchmark is interrupted while waiting for the logins.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = DataGenerator.parseOptions(args);
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "600000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "5"));
+        int users = Integer.parseInt(options.getOrDefault("users", "100"));
+        int cores = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        PasswordHasher hasher = new PasswordHasher(iterations);
+        String[] hashes = new String[users];
+        for (int i = 0; i < users; i++) {
+            hashes[i] = hasher.hash("password" + i);
+        }
+        System.out.printf("PBKDF2-HMAC-SHA256, %,d iterations, %d users%n", iterations, users);
+
+        for (int threads : cores > 1 ? new int[]{1, cores} : new int[]{1}) {
+            try (CredentialService service = new CredentialService(CredentialBenchmark::noDatabase, hasher, threads, 0, 0)) {
+                System.out.printf("%nUncached, %d verification thread%s%n", threads, threads > 1 ? "s" : "");
+                double perSecond = run(service, hashes, threads, Duration.ofSeconds(seconds));
+                System.out.printf("%,.1f verifications/s per thread%n", perSecond / threads);
+            }
+        }
+
+        try (CredentialService service = new CredentialService(CredentialBenchmark::noDatabase, hasher, cores,
+                60_000, 10_000)) {
+            System.out.printf("%nCached, %d verification thread%s%n", cores, cores > 1 ? "s" : "");
+            run(service, hashes, cores, Duration.ofSeconds(seconds));
+            System.out.println(service.stats().toJson());
+        }
+    }
+
+    /**
+     * Verifies random users' credentials for the given duration and prints the results.
+     *
+     * @return The verifications per second.
+     */
+    private static double run(CredentialService service, String[] hashes, int threads, Duration duration)
+            throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        LongAdder logins = new LongAdder();
+        Instant end = Instant.now().plus(duration);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads * 2; t++) {
+                executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (Instant.now().isBefore(end)) {
+                        int user = random.nextInt(hashes.length);
+                        long begin = System.nanoTime();
+                        if (service.check("member", "member" + user, "password" + user, hashes[user]).join()) {
+                            recorder.record("login", System.nanoTime() - begin);
+                            logins.increment();
+                        } else {
+                            recorder.recordError("login");
+                        }
+                    }
+                });
+            }
+        }
+        double perSecond = logins.sum() / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("%,.1f verifications/s (%,d in total)%n", perSecond, logins.sum());
+        System.out.println(recorder.report());
+        return perSecond;
+    }
+
+    private static MongoDatabase noDatabase() {
+        throw new IllegalStateException("The benchmark does not use a database");
+    }
+}
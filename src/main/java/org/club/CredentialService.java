@@ -0,0 +1,304 @@
+package org.club;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Checks usernames and passwords against the hashes stored in the admin and member collections.
+ * <p>
+ * The stored hash is fetched by username, which is uniquely indexed, on the calling thread.
+ * A {@link #login login} looks the username up in both collections first and then verifies only the password
+ * of the account that exists, so a member login costs one hash, not one per collection.
+ * The slow {@link PasswordHasher} work runs on a dedicated pool with one thread per core and a bounded
+ * queue, so a rush of logins queues up instead of starving the rest of the process, and a full queue fails
+ * fast instead of growing without limit.
+ * <p>
+ * Successful checks are remembered for a short time in a bounded cache, so a terminal that logs the same
+ * user in again, or a member who retries, does not pay for the hash twice.
+ * Entries are keyed by an HMAC, under a random per-process key, of the collection, username, password and
+ * stored hash: the cache never holds passwords, and changing a password invalidates its entries.
+ * <p>
+ * Legacy plaintext passwords, and hashes with fewer iterations than the current setting, are replaced with a
+ * new hash after the next successful login, in the background so the login does not wait for it.
+ */
+public class CredentialService implements AutoCloseable {
+    private static final int QUEUE_PER_THREAD = 64;
+    // The user collections, in the order a login tries them
+    private static final List<String> ROLES = List.of("admin", "member");
+
+    private final Supplier<MongoDatabase> database;
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor pool;
+    // Runs the upgrade writes, so the verification threads only ever hash
+    private final ExecutorService writes = Executors.newVirtualThreadPerTaskExecutor();
+    private final long cacheTtlMillis;
+    private final Map<String, Long> verified;
+    private final ThreadLocal<Mac> macs;
+    // Checked against unknown usernames, so they take as long as wrong passwords
+    private final String dummyHash;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder hashes = new LongAdder();
+
+    /**
+     * Creates the service and starts its verification pool.
+     *
+     * @param database        Supplies the club database; called on the first lookup only.
+     * @param hasher          Hashes and verifies passwords.
+     * @param threads         The number of verification threads, normally the number of cores.
+     * @param cacheTtlMillis  How long a successful check is remembered.
+     * @param cacheMaxEntries The maximum number of remembered checks.
+     */
+    public CredentialService(Supplier<MongoDatabase> database, PasswordHasher hasher, int threads,
+                             long cacheTtlMillis, int cacheMaxEntries) {
+        this.database = database;
+        this.hasher = hasher;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        SecretKeySpec cacheKey = new SecretKeySpec(key, "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(cacheKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        });
+
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), runnable -> {
+            Thread thread = new Thread(runnable, "credential-verify-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dummyHash = hasher.hash("");
+    }
+
+    /**
+     * Checks a username and password, upgrading the stored hash if needed.
+     * Blocks until the check is done; call it off the event dispatch thread.
+     *
+     * @param username   The username.
+     * @param password   The password.
+     * @param collection The user collection, {@code admin} or {@code member}.
+     * @return Whether the credentials are valid.
+     * @throws IllegalStateException If too many checks are already waiting.
+     */
+    public boolean authenticate(String username, String password, String collection) {
+        if (username == null || password == null) {
+            return false;
+        }
+        Document user = find(collection, username);
+        if (user == null) {
+            join(check(collection, username, password, dummyHash));
+            return false;
+        }
+        return verify(collection, user, password);
+    }
+
+    /**
+     * Logs a user in as an administrator or a member, upgrading the stored hash if needed.
+     * Both collections are looked up by username before any password is verified, so a login costs one hash
+     * unless the username exists in both.
+     * Blocks until the check is done; call it off the event dispatch thread.
+     *
+     * @param username The username.
+     * @param password The password.
+     * @return The collection the user was authenticated against, {@code admin} or {@code member}, or
+     * {@code null} if the credentials are invalid.
+     * @throws IllegalStateException If too many checks are already waiting.
+     */
+    public String login(String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        boolean found = false;
+        for (String collection : ROLES) {
+            Document user = find(collection, username);
+            if (user != null) {
+                found = true;
+                if (verify(collection, user, password)) {
+                    return collection;
+                }
+            }
+        }
+        if (!found) {
+            join(check(ROLES.get(0), username, password, dummyHash));
+        }
+        return null;
+    }
+
+    private Document find(String collection, String username) {
+        Document user = database.get().getCollection(collection).find(Filters.eq("username", username))
+                .projection(Projections.include("username", "password")).first();
+        return user == null || user.getString("password") == null ? null : user;
+    }
+
+    /**
+     * Checks the password of a user that was found, and starts upgrading its stored hash if it is valid.
+     */
+    private boolean verify(String collection, Document user, String password) {
+        String stored = user.getString("password");
+        boolean valid = join(check(collection, user.getString("username"), password, stored));
+        if (valid && hasher.needsUpgrade(stored)) {
+            upgrade(collection, user, password);
+        }
+        return valid;
+    }
+
+    /**
+     * Replaces a stored password with a new hash computed on the verification pool and written on a virtual
+     * thread; a full pool leaves it for the next login.
+     */
+    private void upgrade(String collection, Document user, String password) {
+        String stored = user.getString("password");
+        CompletableFuture<String> upgraded;
+        try {
+            upgraded = submit(() -> hasher.hash(password));
+        } catch (IllegalStateException e) {
+            return;
+        }
+        upgraded.thenAcceptAsync(hash -> {
+            MongoCollection<Document> users = database.get().getCollection(collection);
+            // Only replaces the value that was checked, so a concurrent password change wins
+            users.updateOne(Filters.and(Filters.eq("_id", user.get("_id")), Filters.eq("password", stored)),
+                    Updates.set("password", hash));
+            remember(digest(collection, user.getString("username"), password, hash));
+        }, writes).exceptionally(e -> {
+            System.err.println("Could not upgrade the password hash of " + user.getString("username") + ": "
+                    + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Checks a password against a stored value, answering from the cache when the same check succeeded recently.
+     *
+     * @param collection The user collection.
+     * @param username   The username.
+     * @param password   The password.
+     * @param stored     The stored hash or legacy plaintext password.
+     * @return The result of the check, completed on the verification pool unless it was cached.
+     * @throws IllegalStateException If too many checks are already waiting.
+     */
+    public CompletableFuture<Boolean> check(String collection, String username, String password, String stored) {
+        String key = digest(collection, username, password, stored);
+        if (isRemembered(key)) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(true);
+        }
+        return submit(() -> {
+            hashes.increment();
+            boolean valid = hasher.verify(password, stored);
+            if (valid) {
+                remember(key);
+            }
+            return valid;
+        });
+    }
+
+    /**
+     * Retrieves the usage counters of the service.
+     *
+     * @return The number of checks answered from the cache, of password hashes computed, and of checks waiting
+     * for a verification thread.
+     */
+    public Document stats() {
+        return new Document("cacheHits", cacheHits.sum()).append("hashes", hashes.sum())
+                .append("queued", pool.getQueue().size());
+    }
+
+    /**
+     * Stops the verification pool and any pending hash upgrade.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        writes.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, pool);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Too many logins in progress, try again shortly", e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private boolean isRemembered(String key) {
+        synchronized (verified) {
+            Long expiry = verified.get(key);
+            if (expiry == null) {
+                return false;
+            }
+            if (expiry < System.currentTimeMillis()) {
+                verified.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void remember(String key) {
+        synchronized (verified) {
+            verified.put(key, System.currentTimeMillis() + cacheTtlMillis);
+        }
+    }
+
+    /**
+     * Computes the cache key of a check: an HMAC over the length-prefixed fields, so no two different checks
+     * share a key.
+     */
+    private String digest(String... fields) {
+        Mac mac = macs.get();
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            mac.update(bytes);
+        }
+        return Base64.getEncoder().withoutPadding().encodeToString(mac.doFinal());
+    }
+}
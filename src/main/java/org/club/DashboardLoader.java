@@ -0,0 +1,173 @@
+package org.club;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads dashboard widgets concurrently and applies their results to the UI in coalesced EDT passes.
+ * <p>
+ * Every widget query is started at once on its own virtual thread, so the time until the dashboard is fully
+ * populated is that of the slowest query rather than the sum of all of them, and no platform thread is held
+ * while a query waits on the network.
+ * A semaphore bounds the number of queries in flight (backpressure), so a dashboard with many widgets
+ * cannot exhaust the MongoDB connection pool shared with the rest of the application.
+ * <p>
+ * Results are not rendered one {@code invokeLater} at a time: finished widgets are queued and a single
+ * EDT pass renders everything that is ready, so a burst of results costs one layout and repaint.
+ * Rendering is a separate step: the futures complete as soon as the queries finished, and headless callers
+ * can use {@link #run} to get the results without involving the EDT at all.
+ */
+public class DashboardLoader {
+    /**
+     * A dashboard widget: a query that runs off the EDT and a render step that runs on it.
+     *
+     * @param <T> The type of the query result.
+     */
+    public interface Widget<T> {
+        /**
+         * Runs the widget's query. Called on a virtual thread; may block.
+         *
+         * @return The query result.
+         * @throws Exception If the query fails.
+         */
+        T query() throws Exception;
+
+        /**
+         * Shows the query result. Called on the EDT.
+         *
+         * @param result The query result.
+         */
+        void render(T result);
+
+        /**
+         * Shows that the query failed. Called on the EDT.
+         *
+         * @param error The failure.
+         */
+        default void failed(Exception error) {
+            System.err.println("Dashboard widget failed: " + error.getMessage());
+        }
+    }
+
+    // Matches the MongoDB driver's default connection pool size
+    private static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final Queue<Runnable> pendingRenders = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean renderScheduled = new AtomicBoolean();
+
+    /**
+     * Creates a loader allowing as many queries in flight as the default MongoDB connection pool.
+     */
+    public DashboardLoader() {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates a loader with the given limit of concurrent queries.
+     *
+     * @param maxInFlight The maximum number of queries running at the same time.
+     */
+    public DashboardLoader(int maxInFlight) {
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts every widget's query concurrently.
+     *
+     * @param widgets The widgets to load.
+     * @return A future completed once every query has finished; the widgets are rendered on the EDT afterwards.
+     */
+    public CompletableFuture<Void> load(List<? extends Widget<?>> widgets) {
+        List<CompletableFuture<Void>> rendered = new ArrayList<>(widgets.size());
+        for (Widget<?> widget : widgets) {
+            rendered.add(load(widget));
+        }
+        return CompletableFuture.allOf(rendered.toArray(CompletableFuture<?>[]::new));
+    }
+
+    /**
+     * Starts one widget's query and queues its rendering on the EDT once it finished.
+     *
+     * @param widget The widget to load.
+     * @param <T>    The type of the query result.
+     * @return A future completed once the query has finished, successfully or not; the widget is rendered (or
+     * marked failed) on the EDT afterwards.
+     */
+    public <T> CompletableFuture<Void> load(Widget<T> widget) {
+        return run(widget::query).handle((result, error) -> {
+            if (error == null) {
+                enqueueRender(() -> widget.render(result));
+            } else {
+                Throwable thrown = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                Exception cause = thrown instanceof Exception exception ? exception : new Exception(thrown);
+                enqueueRender(() -> widget.failed(cause));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs one query on a virtual thread, within the limit of queries in flight, without rendering anything.
+     *
+     * @param query The query.
+     * @param <T>   The type of the query result.
+     * @return A future completed with the result of the query, or exceptionally with its failure.
+     */
+    public <T> CompletableFuture<T> run(Callable<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.submit(() -> {
+            try {
+                inFlight.acquire();
+                try {
+                    result.complete(query.call());
+                } finally {
+                    inFlight.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Queues a render step and schedules an EDT pass unless one is already pending.
+     */
+    private void enqueueRender(Runnable render) {
+        pendingRenders.add(render);
+        if (renderScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::renderPending);
+        }
+    }
+
+    /**
+     * Renders everything that is ready in one EDT pass.
+     */
+    private void renderPending() {
+        // Clear the flag first so results arriving during this pass schedule another one
+        renderScheduled.set(false);
+        Runnable render;
+        while ((render = pendingRenders.poll()) != null) {
+            try {
+                render.run();
+            } catch (RuntimeException e) {
+                System.err.println("Dashboard render failed: " + e.getMessage());
+            }
+        }
+    }
+}
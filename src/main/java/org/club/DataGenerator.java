@@ -0,0 +1,325 @@
+package org.club;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Command-line tool that fills the club database with realistic synthetic data for capacity planning.
+ * <p>
+ * It generates members, store items, facility bookings and financial transactions with skewed,
+ * club-like distributions: member ages produce the minors / middle group / seniors split used for
+ * categorisation, item prices are log-normal, item popularity is Zipf-distributed, and transactions and
+ * bookings cluster around opening hours and weekends.
+ * <p>
+ * Documents are generated and inserted in parallel chunks, each written with one unordered bulk insert,
+ * either into MongoDB or into an {@link InMemoryStore}.
+ * Each chunk has its own seeded random source, so the output does not depend on thread scheduling.
+ * <p>
+ * Usage: {@code DataGenerator [--target mongo|memory] [--members N] [--items N] [--bookings N]
+ * [--transactions N] [--batch N] [--threads N]}
+ */
+public class DataGenerator implements AutoCloseable {
+    /**
+     * Destination for generated documents.
+     */
+    public interface BulkSink {
+        /**
+         * Inserts a batch of documents into the named collection.
+         *
+         * @param collection The collection name.
+         * @param batch      The documents to insert.
+         */
+        void insert(String collection, List<Document> batch);
+    }
+
+    static final String[] SUB_COUNTIES = {"Baringo Central", "Baringo North", "Baringo South", "Eldama Ravine",
+            "Mogotio", "Tiaty", "Marigat", "Kabarnet"};
+    static final String[] SCHOOLS = {"Kabarnet High", "Moi Eldama Ravine", "Baringo Boys", "Marigat Mixed",
+            "Kapropita Girls", "Kabarnet University College", "Eldama Ravine TTC", "Not in school"};
+    static final String[] SPORTS = {"Football", "Volleyball", "Athletics", "Basketball", "Handball", "Netball",
+            "Rugby", "Table Tennis"};
+    static final String[] FACILITIES = {"Main Pitch", "Training Pitch", "Indoor Court", "Track", "Gym"};
+    static final String[] ITEM_KINDS = {"Ball", "Jersey", "Boots", "Shin Guards", "Gloves", "Net", "Cones",
+            "Water Bottle", "Kit Bag", "Socks"};
+
+    private final BulkSink sink;
+    private final int batchSize;
+    private final ExecutorService pool;
+
+    /**
+     * Creates a generator writing to the given sink.
+     *
+     * @param sink      The destination for generated documents.
+     * @param batchSize The number of documents per bulk insert.
+     * @param threads   The number of parallel insert workers.
+     */
+    public DataGenerator(BulkSink sink, int batchSize, int threads) {
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Creates a sink writing to MongoDB with unordered bulk inserts.
+     *
+     * @param database The target database.
+     * @return A MongoDB sink.
+     */
+    public static BulkSink mongoSink(MongoDatabase database) {
+        InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+        return (collection, batch) -> database.getCollection(collection).insertMany(batch, unordered);
+    }
+
+    /**
+     * Creates a sink writing to an in-memory store.
+     *
+     * @param store The target store.
+     * @return An in-memory sink.
+     */
+    public static BulkSink memorySink(InMemoryStore store) {
+        return (collection, batch) -> store.collection(collection).insertMany(batch);
+    }
+
+    /**
+     * The entry point of the generator.
+     *
+     * @param args The command-line options described in the class documentation.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        int members = Integer.parseInt(options.getOrDefault("members", "100000"));
+        int items = Integer.parseInt(options.getOrDefault("items", "500"));
+        int bookings = Integer.parseInt(options.getOrDefault("bookings", "200000"));
+        int transactions = Integer.parseInt(options.getOrDefault("transactions", "1000000"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        BulkSink sink = "memory".equals(options.get("target"))
+                ? memorySink(new InMemoryStore())
+                : mongoSink(Constant.getDatabase());
+        try (DataGenerator generator = new DataGenerator(sink, batch, threads)) {
+            generator.generateAll(members, items, bookings, transactions);
+        }
+    }
+
+    /**
+     * Parses {@code --name value} pairs into a map.
+     *
+     * @param args The command-line arguments.
+     * @return The options keyed by name without the leading dashes.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Generates every collection and prints the insert rate for each.
+     *
+     * @param members      The number of members.
+     * @param items        The number of store items.
+     * @param bookings     The number of facility bookings.
+     * @param transactions The number of financial transactions.
+     */
+    public void generateAll(int members, int items, int bookings, int transactions) {
+        generate("member", members, DataGenerator::member);
+        generate("item", items, DataGenerator::item);
+        generate("booking", bookings, (random, index) -> booking(random, index, members));
+        generate("transaction", transactions, (random, index) -> transaction(random, index, members, items));
+    }
+
+    /**
+     * Generates {@code count} documents for one collection in parallel chunks of one bulk insert each.
+     *
+     * @param collection The collection name.
+     * @param count      The number of documents.
+     * @param factory    Builds the document with the given index from a per-chunk random source.
+     */
+    public void generate(String collection, int count, BiFunction<SplittableRandom, Integer, Document> factory) {
+        long start = System.nanoTime();
+        AtomicLong inserted = new AtomicLong();
+        List<Future<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < count; from += batchSize) {
+            int first = from;
+            int last = Math.min(count, from + batchSize);
+            chunks.add(pool.submit(() -> {
+                // Seed per chunk so the output does not depend on thread scheduling
+                SplittableRandom random = new SplittableRandom(collection.hashCode() * 31L + first);
+                List<Document> batch = new ArrayList<>(last - first);
+                for (int i = first; i < last; i++) {
+                    batch.add(factory.apply(random, i));
+                }
+                sink.insert(collection, batch);
+                inserted.addAndGet(batch.size());
+            }));
+        }
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to generate " + collection, e);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-12s %,12d docs in %6.1f s (%,.0f docs/s)%n", collection, inserted.get(), seconds, inserted.get() / seconds);
+    }
+
+    /**
+     * Shuts down the insert workers.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Builds a member whose username and password are derived from the index, so load drivers can log in.
+     * The password is stored hashed like any other, so generating members costs one PBKDF2 hash each;
+     * lower {@code PASSWORD_HASH_ITERATIONS} for large test sets.
+     *
+     * @param random The random source.
+     * @param index  The member index.
+     * @return The member document.
+     */
+    static Document member(SplittableRandom random, int index) {
+        // Skew towards youth: roughly 45% minors, 35% middle group, 20% seniors
+        double roll = random.nextDouble();
+        int age = roll < 0.45 ? random.nextInt(8, 18) : roll < 0.80 ? random.nextInt(18, 36) : random.nextInt(36, 70);
+        LocalDate dob = LocalDate.now().minusYears(age).minusDays(random.nextInt(365));
+        String category = age < 18 ? "minor" : age < 36 ? "middle" : "senior";
+        return new Document("username", "member" + index)
+                .append("password", Constant.getPasswordHasher().hash("password" + index))
+                .append("fullName", "Member " + index)
+                .append("gender", random.nextBoolean() ? "M" : "F")
+                .append("dob", toDate(dob.atStartOfDay()))
+                .append("category", category)
+                .append("contact", String.format("07%08d", random.nextInt(100_000_000)))
+                .append("subCounty", SUB_COUNTIES[zipf(random, SUB_COUNTIES.length)])
+                .append("school", SCHOOLS[random.nextInt(SCHOOLS.length)])
+                .append("sport", SPORTS[zipf(random, SPORTS.length)])
+                .append("active", random.nextDouble() < 0.85)
+                .append("joined", toDate(LocalDateTime.now().minusDays(random.nextInt(5 * 365))));
+    }
+
+    /**
+     * Builds a store item with a log-normal price and a stock level somewhere below its maximum.
+     *
+     * @param random The random source.
+     * @param index  The item index, used for the SKU.
+     * @return The item document.
+     */
+    static Document item(SplittableRandom random, int index) {
+        String kind = ITEM_KINDS[index % ITEM_KINDS.length];
+        // Log-normal around KSh 1,500 with a long tail of expensive kit
+        double price = Math.round(Math.exp(7.3 + 0.8 * gaussian(random)));
+        int maxStock = 50 + random.nextInt(450);
+        return new Document("sku", sku(index))
+                .append("name", kind + " " + (index / ITEM_KINDS.length + 1))
+                .append("kind", kind)
+                .append("price", price)
+                .append("stock", random.nextInt(maxStock / 5, maxStock + 1))
+                .append("maxStock", maxStock);
+    }
+
+    /**
+     * Builds a facility booking during opening hours, with weekends twice as likely.
+     *
+     * @param random  The random source.
+     * @param index   The booking index.
+     * @param members The number of generated members.
+     * @return The booking document.
+     */
+    static Document booking(SplittableRandom random, int index, int members) {
+        LocalDateTime start = clubHour(random, 180).plusDays(random.nextInt(30));
+        return new Document("facility", FACILITIES[zipf(random, FACILITIES.length)])
+                .append("start", toDate(start))
+                .append("end", toDate(start.plusHours(1 + random.nextInt(2))))
+                .append("member", "member" + random.nextInt(Math.max(1, members)));
+    }
+
+    /**
+     * Builds a store sale (80%) or facilitation fee payment (20%) with Zipf item popularity.
+     *
+     * @param random  The random source.
+     * @param index   The transaction index.
+     * @param members The number of generated members.
+     * @param items   The number of generated items.
+     * @return The transaction document.
+     */
+    static Document transaction(SplittableRandom random, int index, int members, int items) {
+        Document transaction = new Document("date", toDate(clubHour(random, 730)))
+                .append("member", "member" + random.nextInt(Math.max(1, members)));
+        if (random.nextDouble() < 0.8) {
+            int quantity = 1 + zipf(random, 5);
+            double unitPrice = Math.round(Math.exp(7.3 + 0.8 * gaussian(random)));
+            transaction.append("type", "sale")
+                    .append("sku", sku(zipf(random, Math.max(1, items))))
+                    .append("quantity", quantity)
+                    .append("amount", unitPrice * quantity);
+        } else {
+            transaction.append("type", "fee")
+                    .append("sport", SPORTS[zipf(random, SPORTS.length)])
+                    .append("amount", 500.0 * (1 + random.nextInt(4)));
+        }
+        return transaction;
+    }
+
+    /**
+     * Returns the SKU for an item index.
+     *
+     * @param index The item index.
+     * @return The SKU.
+     */
+    static String sku(int index) {
+        return String.format("SKU-%06d", index);
+    }
+
+    /**
+     * Picks a time within the last {@code days} days between 08:00 and 20:00, with weekends twice as likely.
+     */
+    private static LocalDateTime clubHour(SplittableRandom random, int days) {
+        LocalDateTime day;
+        do {
+            day = LocalDate.now().minusDays(random.nextInt(days)).atStartOfDay();
+        } while (day.getDayOfWeek().getValue() < DayOfWeek.SATURDAY.getValue() && random.nextBoolean());
+        return day.plusHours(8 + random.nextInt(12)).plusMinutes(random.nextInt(60));
+    }
+
+    /**
+     * Picks a rank in {@code [0, n)} with probability proportional to {@code 1 / (rank + 1)}.
+     */
+    private static int zipf(SplittableRandom random, int n) {
+        // Inverse CDF of the continuous approximation: rank ~ (n + 1)^u - 1
+        int rank = (int) (Math.pow(n + 1, random.nextDouble()) - 1);
+        return Math.min(rank, n - 1);
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller transform
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,57 @@
+package org.club;
+
+import org.bson.Document;
+
+import java.util.Date;
+
+/**
+ * Long-term history of the club's append-only events: store sales, facilitation-fee payments and training
+ * attendance.
+ * <p>
+ * The events are kept in time-series storage, and complete months are downsampled into monthly rollups so
+ * date-range reports only read raw events for the partial months at the edges of the range.
+ * Raw events are dropped after a retention period, the rollups are kept.
+ * <p>
+ * {@link MongoEventHistory} uses MongoDB time-series collections, while {@link MemoryEventHistory} uses the
+ * bucketed {@link InMemoryStore.TimeSeries} for benchmarks.
+ */
+public interface EventHistory extends AutoCloseable {
+    /**
+     * Records that a member attended a training session.
+     *
+     * @param username The member's username.
+     * @param sport    The sport trained.
+     * @param date     The time of the session.
+     */
+    void recordAttendance(String username, String sport, Date date);
+
+    /**
+     * Summarises the transactions, sales and fees, in a date range.
+     *
+     * @param from The start of the range, inclusive.
+     * @param to   The end of the range, exclusive.
+     * @return A document with the {@code total} amount and the transaction {@code count}.
+     */
+    Document salesReport(Date from, Date to);
+
+    /**
+     * Counts the training sessions attended in a date range.
+     *
+     * @param from The start of the range, inclusive.
+     * @param to   The end of the range, exclusive.
+     * @return A document with the number of {@code sessions} and a {@code sports} document of sessions per sport.
+     */
+    Document attendanceReport(Date from, Date to);
+
+    /**
+     * Rolls up the months that have become complete and drops raw events past their retention.
+     * This runs periodically in the background; calling it directly is only needed in tools and benchmarks.
+     */
+    void maintain();
+
+    /**
+     * Stops the background maintenance.
+     */
+    @Override
+    void close();
+}
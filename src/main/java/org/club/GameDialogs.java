@@ -0,0 +1,270 @@
+package org.club;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * The dialogs of the Game Management menu: recording, editing and removing game results, and showing the
+ * standings kept by the {@link StandingsEngine}.
+ * <p>
+ * Every database call runs on a {@link SwingWorker}, and the next dialog is opened on the EDT once it returned,
+ * so the dashboard stays responsive while a game is saved or loaded.
+ */
+public class GameDialogs {
+    private static final int RECENT_GAMES = 50;
+    private static final int TOP_SCORERS = 20;
+    // The last step of a change, once it was saved: the dialogs are already closed
+    private static final Consumer<Object> SAVED = result -> {
+    };
+
+    // The two tables of the standings dialog
+    private record StandingsView(List<StandingsEngine.TeamRow> table, List<StandingsEngine.PlayerRow> scorers) {
+    }
+
+    // A game in the picker list
+    private record GameChoice(Document game) {
+        @Override
+        public String toString() {
+            return format().format(game.getDate("date")) + "  " + game.getString("home") + " "
+                    + game.getInteger("homeScore") + " - " + game.getInteger("awayScore") + " " + game.getString("away");
+        }
+    }
+
+    /**
+     * Asks for a new game result and records it.
+     *
+     * @param parent The frame the dialog belongs to.
+     */
+    public static void addGame(JFrame parent) {
+        background(parent, () -> Constant.getStandingsEngine().competitions(), competitions -> {
+            Document game = showGameForm(parent, "Add Game", null, competitions);
+            if (game != null) {
+                background(parent, () -> Constant.getStandingsEngine().addGame(game), SAVED);
+            }
+        });
+    }
+
+    /**
+     * Lets the user pick a recorded game and change its result.
+     *
+     * @param parent The frame the dialog belongs to.
+     */
+    public static void editGame(JFrame parent) {
+        pickGame(parent, "Edit Game", previous ->
+                background(parent, () -> Constant.getStandingsEngine().competitions(), competitions -> {
+                    Document game = showGameForm(parent, "Edit Game", previous, competitions);
+                    if (game != null) {
+                        background(parent, () -> {
+                            Constant.getStandingsEngine().editGame(previous.getObjectId("_id"), game);
+                            return null;
+                        }, SAVED);
+                    }
+                }));
+    }
+
+    /**
+     * Lets the user pick a recorded game and remove it.
+     *
+     * @param parent The frame the dialog belongs to.
+     */
+    public static void removeGame(JFrame parent) {
+        pickGame(parent, "Remove Game", game -> {
+            int answer = JOptionPane.showConfirmDialog(parent, "Remove " + new GameChoice(game) + "?", "Remove Game",
+                    JOptionPane.YES_NO_OPTION);
+            if (answer == JOptionPane.YES_OPTION) {
+                ObjectId id = game.getObjectId("_id");
+                background(parent, () -> Constant.getStandingsEngine().removeGame(id), SAVED);
+            }
+        });
+    }
+
+    /**
+     * Shows the league table and the top scorers of a competition.
+     *
+     * @param parent The frame the dialog belongs to.
+     */
+    public static void showStandings(JFrame parent) {
+        pickCompetition(parent, "Standings", competition -> background(parent, () -> {
+            StandingsEngine engine = Constant.getStandingsEngine();
+            return new StandingsView(engine.table(competition), engine.topScorers(competition, TOP_SCORERS));
+        }, standings -> {
+            DefaultTableModel table = new DefaultTableModel(
+                    new String[]{"#", "Team", "P", "W", "D", "L", "GF", "GA", "GD", "Pts"}, 0);
+            int position = 1;
+            for (StandingsEngine.TeamRow row : standings.table()) {
+                table.addRow(new Object[]{position++, row.team(), row.played(), row.won(), row.drawn(), row.lost(),
+                        row.goalsFor(), row.goalsAgainst(), row.goalDifference(), row.points()});
+            }
+            DefaultTableModel scorers = new DefaultTableModel(new String[]{"#", "Player", "Team", "Goals"}, 0);
+            position = 1;
+            for (StandingsEngine.PlayerRow row : standings.scorers()) {
+                scorers.addRow(new Object[]{position++, row.player(), row.team(), row.goals()});
+            }
+
+            JPanel panel = new JPanel(new GridLayout(1, 2, 10, 0));
+            panel.add(new JScrollPane(new JTable(table)));
+            panel.add(new JScrollPane(new JTable(scorers)));
+            panel.setPreferredSize(new Dimension(900, 400));
+            JOptionPane.showMessageDialog(parent, panel, competition + " standings", JOptionPane.PLAIN_MESSAGE);
+        }));
+    }
+
+    /**
+     * Shows the game form, prefilled with an existing game if given.
+     *
+     * @return The entered game, or null if the user cancelled.
+     */
+    private static Document showGameForm(JFrame parent, String title, Document initial, Set<String> competitions) {
+        JComboBox<String> competition = new JComboBox<>(competitions.toArray(String[]::new));
+        competition.setEditable(true);
+        JTextField date = new JTextField(format().format(initial == null ? new Date() : initial.getDate("date")));
+        JTextField home = new JTextField();
+        JTextField away = new JTextField();
+        JSpinner homeScore = new JSpinner(new SpinnerNumberModel(0, 0, 99, 1));
+        JSpinner awayScore = new JSpinner(new SpinnerNumberModel(0, 0, 99, 1));
+        JTextArea scorers = new JTextArea(5, 30);
+        if (initial != null) {
+            competition.setSelectedItem(initial.getString("competition"));
+            home.setText(initial.getString("home"));
+            away.setText(initial.getString("away"));
+            homeScore.setValue(initial.getInteger("homeScore"));
+            awayScore.setValue(initial.getInteger("awayScore"));
+            StringBuilder lines = new StringBuilder();
+            for (Document scorer : initial.getList("scorers", Document.class, List.of())) {
+                lines.append(scorer.getString("player")).append(", ").append(scorer.getString("team")).append(", ")
+                        .append(scorer.getInteger("goals")).append('\n');
+            }
+            scorers.setText(lines.toString());
+        }
+
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Competition"));
+        panel.add(competition);
+        panel.add(new JLabel("Date (yyyy-MM-dd)"));
+        panel.add(date);
+        panel.add(new JLabel("Home team"));
+        panel.add(home);
+        panel.add(new JLabel("Away team"));
+        panel.add(away);
+        panel.add(new JLabel("Home score"));
+        panel.add(homeScore);
+        panel.add(new JLabel("Away score"));
+        panel.add(awayScore);
+        panel.add(new JLabel("Scorers (player, team, goals per line)"));
+        panel.add(new JScrollPane(scorers));
+
+        while (JOptionPane.showConfirmDialog(parent, panel, title, JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+            try {
+                List<Document> scorerList = new ArrayList<>();
+                for (String line : scorers.getText().split("\n")) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    String[] parts = line.split(",");
+                    if (parts.length != 3) {
+                        throw new IllegalArgumentException("Scorer lines need a player, a team and goals: " + line);
+                    }
+                    scorerList.add(new Document("player", parts[0].trim()).append("team", parts[1].trim())
+                            .append("goals", Integer.parseInt(parts[2].trim())));
+                }
+                Object selected = competition.getSelectedItem();
+                return new Document("competition", selected == null ? "" : selected.toString().trim())
+                        .append("date", format().parse(date.getText().trim()))
+                        .append("home", home.getText().trim())
+                        .append("away", away.getText().trim())
+                        .append("homeScore", (Integer) homeScore.getValue())
+                        .append("awayScore", (Integer) awayScore.getValue())
+                        .append("scorers", scorerList);
+            } catch (ParseException e) {
+                JOptionPane.showMessageDialog(parent, "Invalid date: " + date.getText(), title, JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(parent, e.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lets the user pick a competition with at least one game and hands it to the next step.
+     */
+    private static void pickCompetition(JFrame parent, String title, Consumer<String> next) {
+        background(parent, () -> Constant.getStandingsEngine().competitions(), names -> {
+            Object[] competitions = names.toArray();
+            if (competitions.length == 0) {
+                JOptionPane.showMessageDialog(parent, "No games have been recorded yet.", title,
+                        JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            String competition = (String) JOptionPane.showInputDialog(parent, "Competition:", title,
+                    JOptionPane.PLAIN_MESSAGE, null, competitions, competitions[0]);
+            if (competition != null) {
+                next.accept(competition);
+            }
+        });
+    }
+
+    /**
+     * Lets the user pick one of the latest games of a competition and hands it to the next step.
+     */
+    private static void pickGame(JFrame parent, String title, Consumer<Document> next) {
+        pickCompetition(parent, title, competition ->
+                background(parent, () -> Constant.getStandingsEngine().games(competition, RECENT_GAMES), recent -> {
+                    Object[] games = recent.stream().map(GameChoice::new).toArray();
+                    GameChoice choice = (GameChoice) JOptionPane.showInputDialog(parent, "Game:", title,
+                            JOptionPane.PLAIN_MESSAGE, null, games, games.length == 0 ? null : games[0]);
+                    if (choice != null) {
+                        next.accept(choice.game());
+                    }
+                }));
+    }
+
+    /**
+     * Runs database work on a worker thread, then hands its result to the next step on the EDT.
+     * Invalid input and database errors are reported to the user instead.
+     */
+    private static <T> void background(JFrame parent, Callable<T> work, Consumer<? super T> next) {
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void done() {
+                T result;
+                try {
+                    result = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    System.err.println("Game Management failed: " + e.getCause().getMessage());
+                    JOptionPane.showMessageDialog(parent, e.getCause().getMessage(), "Game Management",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                next.accept(result);
+            }
+        }.execute();
+    }
+
+    private static SimpleDateFormat format() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        return format;
+    }
+}
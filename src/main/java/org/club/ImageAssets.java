@@ -0,0 +1,132 @@
+package org.club;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the image resources as multi-resolution images built from the variants pre-scaled by {@link AssetPipeline}.
+ * <p>
+ * Each returned image holds the 1x and 2x variants of the requested sizes, so Java2D picks the one matching
+ * the screen scale and draws it without resampling.
+ * Only the small pre-scaled files are decoded; the full-size originals stay on disk.
+ * <p>
+ * When the variants are missing (for example when the application is started from an IDE without running the
+ * Maven build), the original is decoded and scaled at runtime instead, so the UI looks the same either way.
+ */
+public class ImageAssets {
+    private static final String SCALED_PATH = "/images/scaled/";
+    private static final String SOURCE_PATH = "/images/";
+
+    private static final Map<String, Image> images = new ConcurrentHashMap<>();
+
+    private ImageAssets() {
+    }
+
+    /**
+     * Returns an icon for a resource at one of its pre-scaled sizes.
+     *
+     * @param name   The resource name, for example {@code user.png}.
+     * @param width  The display width.
+     * @param height The display height.
+     * @return An icon backed by a multi-resolution image.
+     */
+    public static ImageIcon icon(String name, int width, int height) {
+        return new ImageIcon(image(name, new int[][]{{width, height}}));
+    }
+
+    /**
+     * Returns a multi-resolution image for a resource at every size it is drawn at.
+     *
+     * @param name The resource name, for example {@code background.jpg}.
+     * @return A multi-resolution image with all the variants listed in {@link AssetPipeline#VARIANTS}.
+     */
+    public static Image image(String name) {
+        return image(name, AssetPipeline.VARIANTS.get(name));
+    }
+
+    /**
+     * Returns the individual 1x variants of a resource, for APIs such as {@link JFrame#setIconImages(List)}
+     * that pick a size themselves.
+     *
+     * @param name The resource name.
+     * @return One image per display size.
+     */
+    public static List<Image> sizes(String name) {
+        List<Image> sizes = new ArrayList<>();
+        for (int[] size : AssetPipeline.VARIANTS.get(name)) {
+            sizes.add(load(name, size[0], size[1], 1));
+        }
+        return sizes;
+    }
+
+    /**
+     * Builds (or returns the cached) multi-resolution image holding the 1x and 2x variants of the given sizes.
+     */
+    private static Image image(String name, int[][] sizes) {
+        StringBuilder key = new StringBuilder(name);
+        for (int[] size : sizes) {
+            key.append(':').append(size[0]).append('x').append(size[1]);
+        }
+        return images.computeIfAbsent(key.toString(), k -> {
+            List<Image> variants = new ArrayList<>();
+            for (int[] size : sizes) {
+                for (int scale = 1; scale <= 2; scale++) {
+                    Image variant = load(name, size[0], size[1], scale);
+                    if (variant != null) {
+                        variants.add(variant);
+                    }
+                }
+            }
+            // Java2D picks the first variant at least as large as the destination, so order by area
+            variants.sort(Comparator.comparingLong(v -> (long) v.getWidth(null) * v.getHeight(null)));
+            return new BaseMultiResolutionImage(variants.toArray(new Image[0]));
+        });
+    }
+
+    /**
+     * Loads one pre-scaled variant, falling back to scaling the original at runtime.
+     *
+     * @return The variant, or {@code null} for a 2x variant the source cannot provide.
+     */
+    private static Image load(String name, int width, int height, int scale) {
+        URL scaled = ImageAssets.class.getResource(SCALED_PATH + AssetPipeline.variantName(name, width, height, scale));
+        try {
+            if (scaled != null) {
+                return ImageIO.read(scaled);
+            }
+            BufferedImage original = original(name);
+            if (scale > 1 && original.getWidth() <= width && original.getHeight() <= height) {
+                return null;
+            }
+            return AssetPipeline.scale(original, width * scale, height * scale);
+        } catch (IOException e) {
+            // Throw a RuntimeException with details of the exception if an error occurs
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decodes an original resource, from the classpath or from the source tree.
+     */
+    private static BufferedImage original(String name) throws IOException {
+        URL resource = ImageAssets.class.getResource(SOURCE_PATH + name);
+        BufferedImage original = resource != null
+                ? ImageIO.read(resource)
+                : ImageIO.read(new File("src/main/resources/images/" + name));
+        if (original == null) {
+            throw new IOException("Cannot decode image " + name);
+        }
+        return original;
+    }
+}
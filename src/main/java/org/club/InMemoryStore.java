@@ -0,0 +1,441 @@
+package org.club;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * An in-process stand-in for the club database.
+ * <p>
+ * The store holds named collections of {@link Document}s keyed by {@code _id}, with optional hash indexes on
+ * single fields for equality lookups.
+ * It is used for capacity planning and benchmarks when no MongoDB cluster is available, and mirrors the
+ * collection names used against Atlas ({@code member}, {@code item}, {@code booking}, {@code transaction}).
+ * <p>
+ * Collections publish every change to their listeners in-process, which plays the role that change streams
+ * play against Atlas.
+ * <p>
+ * Append-only events can be kept in {@link TimeSeries} collections instead, which group measurements into
+ * time buckets per meta value like MongoDB time-series collections do.
+ * <p>
+ * All operations are thread-safe.
+ */
+public class InMemoryStore {
+    private final Map<String, StoreCollection> collections = new ConcurrentHashMap<>();
+    private final Map<String, TimeSeries> timeSeries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the collection with the given name, creating it if necessary.
+     *
+     * @param name The collection name.
+     * @return The collection.
+     */
+    public StoreCollection collection(String name) {
+        return collections.computeIfAbsent(name, StoreCollection::new);
+    }
+
+    /**
+     * Returns the time-series collection with the given name, creating it with the given layout if necessary.
+     *
+     * @param name             The collection name.
+     * @param timeField        The field holding the time of each measurement.
+     * @param metaField        The field identifying the series a measurement belongs to, such as a member or
+     *                         item id.
+     * @param bucketSpanMillis The time span covered by one bucket.
+     * @return The time-series collection.
+     */
+    public TimeSeries timeSeries(String name, String timeField, String metaField, long bucketSpanMillis) {
+        return timeSeries.computeIfAbsent(name, key -> new TimeSeries(key, timeField, metaField, bucketSpanMillis));
+    }
+
+    /**
+     * A named collection of documents inside an {@link InMemoryStore}.
+     */
+    public static class StoreCollection {
+        private final String name;
+        private final Map<Object, Document> documents = new ConcurrentHashMap<>();
+        private final Map<String, Map<Object, Set<Object>>> indexes = new ConcurrentHashMap<>();
+        private final List<BiConsumer<Document, Document>> listeners = new CopyOnWriteArrayList<>();
+
+        private StoreCollection(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of this collection.
+         *
+         * @return The collection name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Creates a hash index on a single field so that {@link #findFirst(String, Object)} avoids a scan.
+         * Existing documents are indexed immediately.
+         *
+         * @param field The field to index.
+         */
+        public void createIndex(String field) {
+            indexes.computeIfAbsent(field, key -> {
+                Map<Object, Set<Object>> index = new ConcurrentHashMap<>();
+                documents.forEach((id, document) -> addToIndex(index, document.get(field), id));
+                return index;
+            });
+        }
+
+        /**
+         * Registers a listener called after every change with the previous and the new version of the document.
+         * The previous version is {@code null} for an insert and the new version is {@code null} for a delete.
+         * Listeners run on the thread that made the change and must not block.
+         *
+         * @param listener The listener to register.
+         */
+        public void addListener(BiConsumer<Document, Document> listener) {
+            listeners.add(listener);
+        }
+
+        /**
+         * Inserts a document, assigning an {@link ObjectId} when it has no {@code _id}.
+         * A document with an existing {@code _id} replaces the previous one.
+         *
+         * @param document The document to insert.
+         */
+        public void insertOne(Document document) {
+            Object id = document.computeIfAbsent("_id", key -> new ObjectId());
+            changed(documents.put(id, document), document);
+        }
+
+        /**
+         * Atomically replaces a document with the result of applying a function to it.
+         * The function receives the current document and must return a new document rather than mutate it;
+         * returning {@code null} leaves the document unchanged.
+         *
+         * @param id     The document id.
+         * @param update Computes the new version from the current one.
+         * @return The new version, or {@code null} if there is no such document or it was left unchanged.
+         */
+        public Document update(Object id, UnaryOperator<Document> update) {
+            Document[] versions = new Document[2];
+            documents.computeIfPresent(id, (key, current) -> apply(id, current, update, versions));
+            if (versions[1] != null) {
+                changed(versions[0], versions[1]);
+            }
+            return versions[1];
+        }
+
+        /**
+         * Atomically inserts or replaces a document with the result of applying a function to it.
+         * The function receives the current document, or {@code null} if there is none, and follows the same
+         * rules as in {@link #update(Object, UnaryOperator)}.
+         *
+         * @param id     The document id.
+         * @param update Computes the new version from the current one, or the first version from {@code null}.
+         * @return The new version, or {@code null} if it was left unchanged.
+         */
+        public Document upsert(Object id, UnaryOperator<Document> update) {
+            Document[] versions = new Document[2];
+            documents.compute(id, (key, current) -> apply(id, current, update, versions));
+            if (versions[1] != null) {
+                changed(versions[0], versions[1]);
+            }
+            return versions[1];
+        }
+
+        /**
+         * Deletes a document by {@code _id}.
+         *
+         * @param id The document id.
+         * @return The deleted document, or {@code null} if there was none.
+         */
+        public Document deleteById(Object id) {
+            Document previous = documents.remove(id);
+            if (previous != null) {
+                changed(previous, null);
+            }
+            return previous;
+        }
+
+        /**
+         * Inserts a batch of documents.
+         *
+         * @param batch The documents to insert.
+         * @see #insertOne(Document)
+         */
+        public void insertMany(List<Document> batch) {
+            batch.forEach(this::insertOne);
+        }
+
+        /**
+         * Looks up a document by {@code _id}.
+         *
+         * @param id The document id.
+         * @return The document, or {@code null} if there is none.
+         */
+        public Document findById(Object id) {
+            return documents.get(id);
+        }
+
+        /**
+         * Returns the first document whose field equals the given value.
+         * Uses the hash index on the field when one exists and scans otherwise.
+         *
+         * @param field The field to match.
+         * @param value The value to match.
+         * @return A matching document, or {@code null} if there is none.
+         */
+        public Document findFirst(String field, Object value) {
+            Map<Object, Set<Object>> index = indexes.get(field);
+            if (index != null) {
+                Set<Object> ids = index.get(value);
+                if (ids == null) {
+                    return null;
+                }
+                return ids.stream().map(documents::get).filter(d -> d != null).findFirst().orElse(null);
+            }
+            return find(document -> value.equals(document.get(field))).findFirst().orElse(null);
+        }
+
+        /**
+         * Streams the documents matching a predicate.
+         *
+         * @param filter The predicate to match.
+         * @return A stream of matching documents.
+         */
+        public Stream<Document> find(Predicate<Document> filter) {
+            return documents.values().stream().filter(filter);
+        }
+
+        /**
+         * Returns a live view of every document in the collection.
+         *
+         * @return All documents.
+         */
+        public Collection<Document> all() {
+            return documents.values();
+        }
+
+        /**
+         * Returns the number of documents in the collection.
+         *
+         * @return The document count.
+         */
+        public long count() {
+            return documents.size();
+        }
+
+        private static Document apply(Object id, Document current, UnaryOperator<Document> update, Document[] versions) {
+            Document next = update.apply(current);
+            if (next == null) {
+                return current;
+            }
+            next.put("_id", id);
+            versions[0] = current;
+            versions[1] = next;
+            return next;
+        }
+
+        private void changed(Document previous, Document current) {
+            Object id = (current != null ? current : previous).get("_id");
+            indexes.forEach((field, index) -> {
+                // An unchanged key stays indexed, so concurrent lookups never see it missing
+                if (previous != null && current != null && Objects.equals(previous.get(field), current.get(field))) {
+                    return;
+                }
+                if (previous != null) {
+                    removeFromIndex(index, previous.get(field), id);
+                }
+                if (current != null) {
+                    addToIndex(index, current.get(field), id);
+                }
+            });
+            for (BiConsumer<Document, Document> listener : listeners) {
+                listener.accept(previous, current);
+            }
+        }
+
+        private static void addToIndex(Map<Object, Set<Object>> index, Object value, Object id) {
+            if (value != null) {
+                index.computeIfAbsent(value, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+
+        private static void removeFromIndex(Map<Object, Set<Object>> index, Object value, Object id) {
+            if (value != null) {
+                Set<Object> ids = index.get(value);
+                if (ids != null) {
+                    ids.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * An append-only collection of time-stamped measurements, stored in buckets like a MongoDB time-series
+     * collection.
+     * <p>
+     * Measurements with the same meta value are grouped into buckets covering a fixed time span, and each
+     * bucket tracks the earliest and latest time it holds.
+     * A range query only visits the buckets overlapping the range and only filters the measurements of the
+     * buckets at its edges; buckets entirely inside the range are streamed as they are.
+     * Expiry drops whole buckets.
+     */
+    public static class TimeSeries {
+        private static final Object NO_META = new Object();
+
+        private final String name;
+        private final String timeField;
+        private final String metaField;
+        private final long bucketSpanMillis;
+        private final Map<Object, ConcurrentSkipListMap<Long, Bucket>> series = new ConcurrentHashMap<>();
+
+        /**
+         * Measurements of one meta value within one time span.
+         */
+        private static class Bucket {
+            // Append-only: a prefix of the array never changes, so readers can use it without copying
+            private Document[] measurements = new Document[16];
+            private int size;
+            private long min = Long.MAX_VALUE;
+            private long max = Long.MIN_VALUE;
+
+            synchronized void add(Document measurement, long time) {
+                if (size == measurements.length) {
+                    measurements = Arrays.copyOf(measurements, size * 2);
+                }
+                measurements[size++] = measurement;
+                min = Math.min(min, time);
+                max = Math.max(max, time);
+            }
+
+            synchronized List<Document> snapshot() {
+                return Arrays.asList(measurements).subList(0, size);
+            }
+        }
+
+        private TimeSeries(String name, String timeField, String metaField, long bucketSpanMillis) {
+            this.name = name;
+            this.timeField = timeField;
+            this.metaField = metaField;
+            this.bucketSpanMillis = bucketSpanMillis;
+        }
+
+        /**
+         * Returns the name of this collection.
+         *
+         * @return The collection name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Appends a measurement.
+         *
+         * @param measurement The measurement; its time field must hold a {@link Date}.
+         */
+        public void insertOne(Document measurement) {
+            long time = measurement.getDate(timeField).getTime();
+            Object meta = Objects.requireNonNullElse(measurement.get(metaField), NO_META);
+            series.computeIfAbsent(meta, key -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(Math.floorDiv(time, bucketSpanMillis) * bucketSpanMillis, key -> new Bucket())
+                    .add(measurement, time);
+        }
+
+        /**
+         * Streams the measurements whose time lies in {@code [from, to)}.
+         *
+         * @param from The start of the range, inclusive.
+         * @param to   The end of the range, exclusive.
+         * @return A stream of the measurements in the range.
+         */
+        public Stream<Document> range(Date from, Date to) {
+            long start = from.getTime();
+            long end = to.getTime();
+            return series.values().stream()
+                    .flatMap(buckets -> buckets.subMap(Math.floorDiv(start, bucketSpanMillis) * bucketSpanMillis, end)
+                            .values().stream())
+                    .flatMap(bucket -> {
+                        List<Document> measurements;
+                        long min;
+                        long max;
+                        synchronized (bucket) {
+                            measurements = bucket.snapshot();
+                            min = bucket.min;
+                            max = bucket.max;
+                        }
+                        if (min >= start && max < end) {
+                            return measurements.stream();
+                        }
+                        return measurements.stream().filter(measurement -> {
+                            long time = measurement.getDate(timeField).getTime();
+                            return time >= start && time < end;
+                        });
+                    });
+        }
+
+        /**
+         * Drops every bucket whose measurements are all older than the cutoff.
+         *
+         * @param cutoff The expiry time.
+         * @return The number of buckets dropped.
+         */
+        public int expireBefore(Date cutoff) {
+            int dropped = 0;
+            for (ConcurrentSkipListMap<Long, Bucket> buckets : series.values()) {
+                var expired = buckets.headMap(Math.floorDiv(cutoff.getTime(), bucketSpanMillis) * bucketSpanMillis);
+                for (Map.Entry<Long, Bucket> entry : expired.entrySet()) {
+                    boolean old;
+                    synchronized (entry.getValue()) {
+                        old = entry.getValue().max < cutoff.getTime();
+                    }
+                    if (old && buckets.remove(entry.getKey(), entry.getValue())) {
+                        dropped++;
+                    }
+                }
+            }
+            return dropped;
+        }
+
+        /**
+         * Returns the time of the earliest measurement.
+         *
+         * @return The earliest time, or {@code null} if the collection is empty.
+         */
+        public Date earliest() {
+            long earliest = Long.MAX_VALUE;
+            for (ConcurrentSkipListMap<Long, Bucket> buckets : series.values()) {
+                Map.Entry<Long, Bucket> first = buckets.firstEntry();
+                if (first != null) {
+                    synchronized (first.getValue()) {
+                        earliest = Math.min(earliest, first.getValue().min);
+                    }
+                }
+            }
+            return earliest == Long.MAX_VALUE ? null : new Date(earliest);
+        }
+
+        /**
+         * Returns the number of buckets.
+         *
+         * @return The bucket count.
+         */
+        public long bucketCount() {
+            return series.values().stream().mapToLong(Map::size).sum();
+        }
+    }
+}
@@ -1,7 +1,245 @@
 package org.club;
 
-import javax.swing.*;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 
-public class InitialSetup extends JFrame {
-    /*TODO: make this class be first to run during the initial run to setup admin for the system */
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The schema manager of the club database, run at startup before any screen is shown.
+ * <p>
+ * It declares the indexes and validators of every collection and applies them idempotently: indexes that
+ * exist are left alone, validators are replaced with {@code collMod}, and the applied version is recorded in
+ * the {@code schema_version} collection, so later startups skip straight to the checks.
+ * Bump {@link #SCHEMA_VERSION} whenever the declarations change.
+ * <p>
+ * On a fresh database it also seeds the first administrator from {@code ADMIN_USERNAME} and
+ * {@code ADMIN_PASSWORD} in the {@code .env} file (the username defaults to {@code admin}); there is no default
+ * password, so setup fails until one is set.
+ * <p>
+ * Finally it runs {@code explain()} on the key queries of the application, such as the login lookup, and
+ * fails if any of them would scan the whole collection, so a dropped or mistyped index is caught at startup
+ * rather than as a slow front desk.
+ */
+public class InitialSetup {
+    /**
+     * The version of the declarations below.
+     */
+    static final int SCHEMA_VERSION = 2;
+
+    private static final String VERSION_COLLECTION = "schema_version";
+
+    // An index on one collection, with a stable name so it is recognised on later runs
+    private record IndexSpec(String collection, Bson keys, IndexOptions options) {
+    }
+
+    // A query the application relies on, which must be answered from an index
+    private record KeyQuery(String description, String collection, Bson filter) {
+    }
+
+    private static final List<IndexSpec> INDEXES = List.of(
+            new IndexSpec("member", Indexes.ascending("username"), new IndexOptions().name("username_unique").unique(true)),
+            new IndexSpec("member", Indexes.ascending("dob"), new IndexOptions().name("dob")),
+            new IndexSpec("admin", Indexes.ascending("username"), new IndexOptions().name("username_unique").unique(true)),
+            new IndexSpec("item", Indexes.ascending("sku"), new IndexOptions().name("sku_unique").unique(true)),
+            new IndexSpec("transaction", Indexes.ascending("date"), new IndexOptions().name("date")),
+            new IndexSpec("booking", Indexes.ascending("facility", "start"), new IndexOptions().name("facility_start")),
+            new IndexSpec("event", Indexes.ascending("date"), new IndexOptions().name("date")),
+            new IndexSpec("game", Indexes.compoundIndex(Indexes.ascending("competition"), Indexes.descending("date")),
+                    new IndexOptions().name("competition_date")));
+
+    private static final Map<String, Document> VALIDATORS = Map.of(
+            "member", schema(List.of("username", "password"), new Document()
+                    .append("username", type("string"))
+                    .append("password", type("string"))
+                    .append("dob", type("date"))
+                    .append("active", type("bool"))),
+            "admin", schema(List.of("username", "password"), new Document()
+                    .append("username", type("string"))
+                    .append("password", type("string"))),
+            "item", schema(List.of("sku", "price"), new Document()
+                    .append("sku", type("string"))
+                    .append("price", type("number"))
+                    .append("stock", type("number"))
+                    .append("maxStock", type("number"))),
+            "transaction", schema(List.of("date", "amount"), new Document()
+                    .append("date", type("date"))
+                    .append("amount", type("number"))
+                    .append("quantity", type("number"))),
+            "booking", schema(List.of("facility", "start", "end"), new Document()
+                    .append("facility", type("string"))
+                    .append("start", type("date"))
+                    .append("end", type("date"))),
+            "event", schema(List.of("date"), new Document("date", type("date"))),
+            "game", schema(List.of("competition", "date", "home", "away", "homeScore", "awayScore"), new Document()
+                    .append("competition", type("string"))
+                    .append("date", type("date"))
+                    .append("home", type("string"))
+                    .append("away", type("string"))
+                    .append("homeScore", type("int"))
+                    .append("awayScore", type("int"))
+                    .append("scorers", type("array"))));
+
+    private static final List<KeyQuery> KEY_QUERIES = List.of(
+            new KeyQuery("member login", "member", Filters.eq("username", "member0")),
+            new KeyQuery("admin login", "admin", Filters.eq("username", "admin")),
+            new KeyQuery("members by age", "member", Filters.gte("dob", new Date(0))),
+            new KeyQuery("item by SKU", "item", Filters.eq("sku", "SKU-000000")),
+            new KeyQuery("transactions since", "transaction", Filters.gte("date", new Date())),
+            new KeyQuery("facility bookings", "booking", Filters.and(Filters.eq("facility", "Main Pitch"),
+                    Filters.gte("start", new Date()))),
+            new KeyQuery("upcoming events", "event", Filters.gte("date", new Date())),
+            new KeyQuery("competition games", "game", Filters.eq("competition", "League")));
+
+    /**
+     * Applies the schema to the database and checks the key queries.
+     *
+     * @param args The command-line arguments (unused).
+     */
+    public static void main(String[] args) {
+        run(Constant.getDatabase());
+        System.out.println("Schema version " + SCHEMA_VERSION + " is in place and every key query uses an index");
+    }
+
+    /**
+     * Applies the schema if the database is behind, seeds the first administrator and checks the key queries.
+     *
+     * @param database The club database.
+     * @throws IllegalStateException If the schema cannot be applied, no administrator can be seeded, or a key
+     *                               query would scan a collection.
+     */
+    public static void run(MongoDatabase database) {
+        Document applied = database.getCollection(VERSION_COLLECTION).find(Filters.eq("_id", "schema")).first();
+        if (applied == null || applied.getInteger("version", 0) < SCHEMA_VERSION) {
+            apply(database);
+        }
+        seedAdmin(database);
+        verify(database);
+    }
+
+    /**
+     * Creates the collections, validators and indexes, and records the schema version.
+     * Every step is safe to repeat.
+     *
+     * @param database The club database.
+     * @throws IllegalStateException If an index cannot be built, for example a unique index over duplicates.
+     */
+    static void apply(MongoDatabase database) {
+        Set<String> existing = database.listCollectionNames().into(new HashSet<>());
+        for (Map.Entry<String, Document> validator : VALIDATORS.entrySet()) {
+            // Moderate validation checks inserts and valid documents, and leaves older invalid ones editable
+            Document command = existing.contains(validator.getKey())
+                    ? new Document("collMod", validator.getKey())
+                    : new Document("create", validator.getKey());
+            database.runCommand(command.append("validator", validator.getValue()).append("validationLevel", "moderate"));
+        }
+
+        List<String> failures = new ArrayList<>();
+        for (IndexSpec index : INDEXES) {
+            try {
+                database.getCollection(index.collection()).createIndex(index.keys(), index.options());
+            } catch (MongoException e) {
+                if (e.getCode() == 85) {
+                    // IndexOptionsConflict: the same keys are already indexed under another name
+                    System.err.println("Index " + index.options().getName() + " on " + index.collection()
+                            + " exists under another name: " + e.getMessage());
+                } else {
+                    failures.add(index.collection() + "." + index.options().getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Could not build indexes: " + String.join("; ", failures));
+        }
+
+        database.getCollection(VERSION_COLLECTION).updateOne(Filters.eq("_id", "schema"),
+                Updates.combine(Updates.set("version", SCHEMA_VERSION), Updates.set("appliedAt", new Date())),
+                new UpdateOptions().upsert(true));
+        System.out.println("Applied schema version " + SCHEMA_VERSION);
+    }
+
+    /**
+     * Creates the first administrator if there is none.
+     *
+     * @param database The club database.
+     * @throws IllegalStateException If there is no administrator yet and {@code ADMIN_PASSWORD} is not set.
+     */
+    static void seedAdmin(MongoDatabase database) {
+        MongoCollection<Document> admins = database.getCollection("admin");
+        if (admins.countDocuments() > 0) {
+            return;
+        }
+        String username = Constant.dotenv.get("ADMIN_USERNAME", "");
+        String password = Constant.dotenv.get("ADMIN_PASSWORD", "");
+        if (password.isBlank()) {
+            throw new IllegalStateException("There is no administrator yet; set ADMIN_PASSWORD to create one");
+        }
+        username = username.isBlank() ? "admin" : username;
+        // An upsert on the unique username, so two terminals starting together seed only one administrator
+        admins.updateOne(Filters.eq("username", username),
+                Updates.setOnInsert("password", Constant.getPasswordHasher().hash(password)),
+                new UpdateOptions().upsert(true));
+        System.out.println("Seeded administrator '" + username + "'");
+    }
+
+    /**
+     * Checks with {@code explain()} that every key query is answered from an index.
+     *
+     * @param database The club database.
+     * @throws IllegalStateException If a key query would scan a whole collection.
+     */
+    static void verify(MongoDatabase database) {
+        List<String> scans = new ArrayList<>();
+        for (KeyQuery query : KEY_QUERIES) {
+            Document plan = database.getCollection(query.collection()).find(query.filter())
+                    .explain(ExplainVerbosity.QUERY_PLANNER);
+            Document planner = plan.get("queryPlanner", Document.class);
+            if (planner != null && containsCollectionScan(planner.get("winningPlan"))) {
+                scans.add(query.description() + " (" + query.collection() + ")");
+            }
+        }
+        if (!scans.isEmpty()) {
+            throw new IllegalStateException("Key queries scan whole collections: " + String.join(", ", scans));
+        }
+    }
+
+    /**
+     * Searches a plan tree for a {@code COLLSCAN} stage, whatever the nesting used by the query engine.
+     */
+    private static boolean containsCollectionScan(Object plan) {
+        if (plan instanceof Document document) {
+            if ("COLLSCAN".equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(InitialSetup::containsCollectionScan);
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(InitialSetup::containsCollectionScan);
+        }
+        return false;
+    }
+
+    private static Document schema(List<String> required, Document properties) {
+        return new Document("$jsonSchema", new Document("bsonType", "object")
+                .append("required", required)
+                .append("properties", properties));
+    }
+
+    private static Document type(String bsonType) {
+        return new Document("bsonType", bsonType);
+    }
 }
@@ -0,0 +1,117 @@
+package org.club;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records operation latencies per operation name and reports throughput and percentiles.
+ * <p>
+ * Latencies are kept in a fixed log-linear histogram (16 sub-buckets per power of two of microseconds),
+ * so recording is allocation-free and lock-free and percentiles are accurate to roughly 6%.
+ * Many threads may record concurrently.
+ */
+public class LatencyRecorder {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Records one completed operation.
+     *
+     * @param operation    The operation name.
+     * @param elapsedNanos The operation latency in nanoseconds.
+     */
+    public void record(String operation, long elapsedNanos) {
+        histograms.computeIfAbsent(operation, key -> new Histogram()).record(elapsedNanos);
+    }
+
+    /**
+     * Records one failed operation.
+     *
+     * @param operation The operation name.
+     */
+    public void recordError(String operation) {
+        histograms.computeIfAbsent(operation, key -> new Histogram()).errors.increment();
+    }
+
+    /**
+     * Builds a report with the count, throughput, error count and p50/p90/p99/p99.9/max latency per operation.
+     *
+     * @return The formatted report.
+     */
+    public String report() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        StringBuilder report = new StringBuilder(String.format("%-14s %10s %10s %8s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "ops/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        histograms.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            Histogram histogram = entry.getValue();
+            long count = histogram.count.sum();
+            report.append(String.format("%-14s %10d %10.1f %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), count, count / seconds, histogram.errors.sum(),
+                    histogram.percentile(50), histogram.percentile(90), histogram.percentile(99),
+                    histogram.percentile(99.9), histogram.maxMicros / 1000.0));
+        });
+        return report.toString();
+    }
+
+    /**
+     * A lock-free log-linear latency histogram in microseconds.
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private volatile long maxMicros;
+
+        void record(long elapsedNanos) {
+            long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+            buckets.incrementAndGet(bucketOf(micros));
+            count.increment();
+            if (micros > maxMicros) {
+                synchronized (this) {
+                    maxMicros = Math.max(maxMicros, micros);
+                }
+            }
+        }
+
+        double percentile(double percentile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxMicros) / 1000.0;
+                }
+            }
+            return maxMicros / 1000.0;
+        }
+
+        private static int bucketOf(long micros) {
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            if (exponent < SUB_BUCKET_BITS) {
+                return (int) micros;
+            }
+            int sub = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.club;
+
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * The live key performance indicators shown on the admin dashboard.
+ * <p>
+ * The values are loaded once as a snapshot and then kept current by applying incremental deltas, one change
+ * at a time, from {@link LiveMetricsFeed}.
+ * Every change marks the metrics dirty; {@link LiveMetricsPanel} picks them up at a bounded rate, so a burst
+ * of writes results in a single repaint.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class LiveMetrics {
+    /**
+     * Fraction of the maximum stock at or below which an item counts as low on stock.
+     */
+    static final double LOW_STOCK_FRACTION = 0.2;
+
+    private final AtomicLong activeMembers = new AtomicLong();
+    private final DoubleAdder todaySales = new DoubleAdder();
+    private final Set<Object> lowStockItems = ConcurrentHashMap.newKeySet();
+    private final Map<Object, Date> eventDates = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private volatile LocalDate salesDay = LocalDate.now();
+
+    /**
+     * Tells whether an item is at or below the low-stock threshold.
+     *
+     * @param item The item document with {@code stock} and {@code maxStock}.
+     * @return True if the item should be reordered.
+     */
+    static boolean isLowStock(Document item) {
+        Number stock = item.get("stock", Number.class);
+        Number maxStock = item.get("maxStock", Number.class);
+        return stock != null && maxStock != null && stock.doubleValue() <= maxStock.doubleValue() * LOW_STOCK_FRACTION;
+    }
+
+    /**
+     * Returns the midnight that starts the current sales day.
+     *
+     * @return The start of today.
+     */
+    static Date startOfToday() {
+        return Date.from(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Replaces every value with a freshly loaded snapshot.
+     *
+     * @param activeMembers The number of active members.
+     * @param todaySales    The total amount of today's transactions.
+     * @param lowStockItems The ids of the items at or below the low-stock threshold.
+     * @param eventDates    The dates of the known events keyed by id.
+     */
+    public void reset(long activeMembers, double todaySales, Collection<?> lowStockItems, Map<?, Date> eventDates) {
+        this.activeMembers.set(activeMembers);
+        this.todaySales.reset();
+        this.todaySales.add(todaySales);
+        this.salesDay = LocalDate.now();
+        this.lowStockItems.clear();
+        this.lowStockItems.addAll(lowStockItems);
+        this.eventDates.clear();
+        this.eventDates.putAll(eventDates);
+        dirty.set(true);
+    }
+
+    /**
+     * Replaces every value with a snapshot produced by {@link #toDocument()}, for example by a {@link ClubServer}.
+     *
+     * @param snapshot The snapshot document.
+     */
+    public void reset(Document snapshot) {
+        Map<Object, Date> events = new HashMap<>();
+        snapshot.getList("events", Document.class, List.of())
+                .forEach(event -> events.put(event.get("_id"), event.getDate("date")));
+        reset(snapshot.get("activeMembers", Number.class).longValue(),
+                snapshot.get("todaySales", Number.class).doubleValue(),
+                snapshot.getList("lowStockItems", Object.class, List.of()), events);
+    }
+
+    /**
+     * Captures the current values, including the ids behind the counts, so another process can
+     * {@link #reset(Document) reset} its metrics to them.
+     *
+     * @return A document with {@code activeMembers}, {@code todaySales}, {@code lowStockItems} and {@code events}.
+     */
+    public Document toDocument() {
+        List<Document> events = eventDates.entrySet().stream()
+                .map(event -> new Document("_id", event.getKey()).append("date", event.getValue()))
+                .toList();
+        return new Document("activeMembers", activeMembers.get())
+                .append("todaySales", todaySales.sum())
+                .append("lowStockItems", List.copyOf(lowStockItems))
+                .append("events", events);
+    }
+
+    /**
+     * Sets the number of active members after a targeted recount.
+     *
+     * @param count The number of active members.
+     */
+    public void setActiveMembers(long count) {
+        activeMembers.set(count);
+        dirty.set(true);
+    }
+
+    /**
+     * Applies a change in the number of active members.
+     *
+     * @param delta The number of members that became active (negative for deactivations).
+     */
+    public void adjustActiveMembers(long delta) {
+        activeMembers.addAndGet(delta);
+        dirty.set(true);
+    }
+
+    /**
+     * Adds a transaction to today's sales if it is dated today.
+     *
+     * @param date   The transaction date.
+     * @param amount The transaction amount.
+     */
+    public void addTransaction(Date date, double amount) {
+        if (date != null && !date.before(startOfToday())) {
+            todaySales.add(amount);
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Records the current stock state of an item.
+     *
+     * @param itemId The item id.
+     * @param low    True if the item is now at or below the threshold, false if it is not or was deleted.
+     */
+    public void updateItem(Object itemId, boolean low) {
+        boolean changed = low ? lowStockItems.add(itemId) : lowStockItems.remove(itemId);
+        if (changed) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Records the current date of an event.
+     *
+     * @param eventId The event id.
+     * @param date    The event date, or {@code null} if the event was deleted.
+     */
+    public void updateEvent(Object eventId, Date date) {
+        if (date == null) {
+            eventDates.remove(eventId);
+        } else {
+            eventDates.put(eventId, date);
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Tells whether the sales day has changed since the last snapshot, in which case today's sales must be reloaded.
+     *
+     * @return True after midnight until the next {@link #reset}.
+     */
+    public boolean isNewDay() {
+        return !salesDay.equals(LocalDate.now());
+    }
+
+    /**
+     * Clears the dirty flag and reports whether anything changed since the previous call.
+     *
+     * @return True if the values changed and the display should be refreshed.
+     */
+    public boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    /**
+     * Returns the number of active members.
+     *
+     * @return The number of active members.
+     */
+    public long getActiveMembers() {
+        return activeMembers.get();
+    }
+
+    /**
+     * Returns the total amount of today's transactions.
+     *
+     * @return Today's sales.
+     */
+    public double getTodaySales() {
+        return todaySales.sum();
+    }
+
+    /**
+     * Returns the number of items at or below the low-stock threshold.
+     *
+     * @return The number of low-stock items.
+     */
+    public int getLowStockItems() {
+        return lowStockItems.size();
+    }
+
+    /**
+     * Returns the number of events that have not started yet.
+     *
+     * @return The number of upcoming events.
+     */
+    public long getUpcomingEvents() {
+        Date now = new Date();
+        return eventDates.values().stream().filter(date -> date.after(now)).count();
+    }
+}
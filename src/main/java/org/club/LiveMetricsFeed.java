@@ -0,0 +1,306 @@
+package org.club;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link LiveMetrics} current from MongoDB change streams, from in-process {@link InMemoryStore} events, or
+ * by polling a {@link ClubService} (terminals of a {@link ClubServer}).
+ * <p>
+ * The feed loads a snapshot once and then applies each change as a delta instead of re-running the
+ * aggregations, so an admin seat costs the cluster one change stream rather than a polling loop.
+ * The stream is opened before the snapshot is taken so that no change is missed in between; a change that
+ * lands while the snapshot is running may be counted twice until the next resync.
+ * <p>
+ * A full resync happens after midnight (to restart today's sales) and when the stream cannot be resumed.
+ * Updates of a member's {@code active} flag, deletes and replacements carry no previous state (setting the
+ * flag to the value it already had looks like any other change), so they trigger a targeted recount of the
+ * active-member count only.
+ * A snapshot in which any query failed is discarded: the previous values stay on screen and the snapshot is
+ * retried a few seconds later, while changes keep being applied.
+ */
+public class LiveMetricsFeed implements AutoCloseable {
+    private static final List<String> WATCHED = List.of("member", "item", "event", "transaction");
+    private static final long RETRY_MILLIS = 5_000;
+
+    private final LiveMetrics metrics;
+    private final DashboardLoader loader = new DashboardLoader();
+    private volatile boolean running = true;
+    private Thread watcher;
+    private ScheduledExecutorService poller;
+
+    private LiveMetricsFeed(LiveMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts feeding the metrics from MongoDB change streams.
+     *
+     * @param database The club database; must be a replica set or Atlas cluster.
+     * @param metrics  The metrics to keep current.
+     * @return The running feed.
+     */
+    public static LiveMetricsFeed fromMongo(MongoDatabase database, LiveMetrics metrics) {
+        LiveMetricsFeed feed = new LiveMetricsFeed(metrics);
+        feed.watcher = Thread.ofVirtual().name("live-metrics").start(() -> feed.watch(database));
+        return feed;
+    }
+
+    /**
+     * Starts feeding the metrics from an in-memory store's change listeners.
+     *
+     * @param store   The store to observe.
+     * @param metrics The metrics to keep current.
+     * @return The running feed.
+     */
+    public static LiveMetricsFeed fromStore(InMemoryStore store, LiveMetrics metrics) {
+        LiveMetricsFeed feed = new LiveMetricsFeed(metrics);
+        store.collection("member").addListener((before, after) -> {
+            long delta = (isActive(after) ? 1 : 0) - (isActive(before) ? 1 : 0);
+            if (delta != 0) {
+                metrics.adjustActiveMembers(delta);
+            }
+        });
+        store.collection("item").addListener((before, after) ->
+                metrics.updateItem(idOf(before, after), after != null && LiveMetrics.isLowStock(after)));
+        store.collection("event").addListener((before, after) ->
+                metrics.updateEvent(idOf(before, after), after == null ? null : after.getDate("date")));
+        store.collection("transaction").addListener((before, after) -> {
+            if (before == null && after != null) {
+                metrics.addTransaction(after.getDate("date"), amountOf(after));
+            }
+        });
+        feed.storeSnapshot(store);
+        return feed;
+    }
+
+    /**
+     * Starts feeding the metrics by polling a club service, so terminals of a {@link ClubServer} need no
+     * database connection of their own.
+     * A failed poll keeps the previous values until the next one succeeds.
+     *
+     * @param service    The club service, normally a {@link RemoteClubService}.
+     * @param metrics    The metrics to keep current.
+     * @param pollMillis The interval between two polls.
+     * @return The running feed.
+     */
+    public static LiveMetricsFeed fromService(ClubService service, LiveMetrics metrics, long pollMillis) {
+        LiveMetricsFeed feed = new LiveMetricsFeed(metrics);
+        feed.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        feed.poller.scheduleWithFixedDelay(() -> {
+            try {
+                metrics.reset(service.liveMetrics());
+            } catch (RuntimeException e) {
+                System.err.println("Live metrics poll failed, keeping the previous values: " + e.getMessage());
+            }
+        }, 0, pollMillis, TimeUnit.MILLISECONDS);
+        return feed;
+    }
+
+    /**
+     * Stops the feed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Watches the club collections, applying every change, and resumes or resyncs after errors.
+     */
+    private void watch(MongoDatabase database) {
+        Bson onlyWatched = Aggregates.match(Filters.in("ns.coll", WATCHED));
+        BsonDocument resumeToken = null;
+        while (running) {
+            var stream = database.watch(List.of(onlyWatched)).fullDocument(FullDocument.UPDATE_LOOKUP);
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                boolean snapshotDue = resumeToken == null;
+                long nextSnapshot = 0;
+                while (running) {
+                    if ((snapshotDue || metrics.isNewDay()) && System.currentTimeMillis() >= nextSnapshot) {
+                        snapshotDue = !mongoSnapshot(database);
+                        nextSnapshot = System.currentTimeMillis() + RETRY_MILLIS;
+                    }
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    apply(database, change);
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    return;
+                }
+                System.err.println("Live metrics stream interrupted: " + e.getMessage());
+                // A token that can no longer be resumed is dropped, forcing a fresh snapshot
+                if (e.hasErrorLabel("NonResumableChangeStreamError") || e.getCode() == 286) {
+                    resumeToken = null;
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies one change stream event to the metrics.
+     */
+    private void apply(MongoDatabase database, ChangeStreamDocument<Document> change) {
+        if (change.getNamespace() == null || change.getDocumentKey() == null) {
+            return;
+        }
+        String collection = change.getNamespace().getCollectionName();
+        OperationType operation = change.getOperationType();
+        Document document = change.getFullDocument();
+        BsonValue id = change.getDocumentKey().get("_id");
+        Object key = id.isObjectId() ? id.asObjectId().getValue() : id.isString() ? id.asString().getValue() : id;
+
+        switch (collection) {
+            case "member" -> {
+                if (operation == OperationType.INSERT) {
+                    if (isActive(document)) {
+                        metrics.adjustActiveMembers(1);
+                    }
+                } else if (operation == OperationType.UPDATE && change.getUpdateDescription() != null) {
+                    UpdateDescription update = change.getUpdateDescription();
+                    if ((update.getUpdatedFields() != null && update.getUpdatedFields().containsKey("active"))
+                            || (update.getRemovedFields() != null && update.getRemovedFields().contains("active"))) {
+                        CompletableFuture.runAsync(() -> recountActiveMembers(database));
+                    }
+                } else {
+                    // No previous state is available for deletes and replacements
+                    CompletableFuture.runAsync(() -> recountActiveMembers(database));
+                }
+            }
+            case "item" -> metrics.updateItem(key, document != null && LiveMetrics.isLowStock(document));
+            case "event" -> metrics.updateEvent(key, document == null ? null : document.getDate("date"));
+            case "transaction" -> {
+                if (operation == OperationType.INSERT && document != null) {
+                    metrics.addTransaction(document.getDate("date"), amountOf(document));
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Loads the snapshot from MongoDB, running the four queries concurrently.
+     * The metrics are only reset once every query succeeded.
+     *
+     * @return False if a query failed and the previous values were kept.
+     */
+    private boolean mongoSnapshot(MongoDatabase database) {
+        CompletableFuture<Long> activeMembers = loader.run(() -> countActiveMembers(database));
+        CompletableFuture<Double> todaySales = loader.run(() -> {
+            Document total = database.getCollection("transaction").aggregate(List.of(
+                    Aggregates.match(Filters.gte("date", LiveMetrics.startOfToday())),
+                    Aggregates.group(null, Accumulators.sum("total", "$amount")))).first();
+            return total == null ? 0 : total.get("total", Number.class).doubleValue();
+        });
+        CompletableFuture<List<Object>> lowStock = loader.run(() -> database.getCollection("item")
+                .find(Filters.expr(new Document("$lte", List.of("$stock",
+                        new Document("$multiply", List.of("$maxStock", LiveMetrics.LOW_STOCK_FRACTION))))))
+                .projection(Projections.include("_id"))
+                .map(item -> item.get("_id"))
+                .into(new ArrayList<>()));
+        CompletableFuture<Map<Object, Date>> events = loader.run(() -> {
+            Map<Object, Date> upcoming = new HashMap<>();
+            database.getCollection("event")
+                    .find(Filters.gte("date", new Date()))
+                    .projection(Projections.include("date"))
+                    .forEach(event -> upcoming.put(event.get("_id"), event.getDate("date")));
+            return upcoming;
+        });
+        try {
+            CompletableFuture.allOf(activeMembers, todaySales, lowStock, events).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            System.err.println("Live metrics snapshot failed, keeping the previous values: " + cause.getMessage());
+            return false;
+        }
+        metrics.reset(activeMembers.join(), todaySales.join(), lowStock.join(), events.join());
+        return true;
+    }
+
+    /**
+     * Loads the snapshot from an in-memory store.
+     */
+    private void storeSnapshot(InMemoryStore store) {
+        Date today = LiveMetrics.startOfToday();
+        Map<Object, Date> events = new HashMap<>();
+        store.collection("event").all().forEach(event -> events.put(event.get("_id"), event.getDate("date")));
+        metrics.reset(
+                store.collection("member").find(LiveMetricsFeed::isActive).count(),
+                store.collection("transaction").find(t -> t.getDate("date") != null && !t.getDate("date").before(today))
+                        .mapToDouble(LiveMetricsFeed::amountOf).sum(),
+                store.collection("item").find(LiveMetrics::isLowStock).map(item -> item.get("_id")).toList(),
+                events);
+    }
+
+    /**
+     * Recounts the active members; recounts run one at a time, so a later count is never overwritten by an
+     * earlier one.
+     */
+    private synchronized void recountActiveMembers(MongoDatabase database) {
+        metrics.setActiveMembers(countActiveMembers(database));
+    }
+
+    private static long countActiveMembers(MongoDatabase database) {
+        return database.getCollection("member").countDocuments(Filters.eq("active", true));
+    }
+
+    private static boolean isActive(Document member) {
+        return member != null && Boolean.TRUE.equals(member.getBoolean("active"));
+    }
+
+    private static Object idOf(Document before, Document after) {
+        return (after != null ? after : before).get("_id");
+    }
+
+    private static double amountOf(Document transaction) {
+        Number amount = transaction.get("amount", Number.class);
+        return amount == null ? 0 : amount.doubleValue();
+    }
+}
@@ -0,0 +1,95 @@
+package org.club;
+
+import javax.swing.*;
+import java.awt.*;
+import java.text.NumberFormat;
+
+/**
+ * A dashboard panel showing the live club KPIs: active members, today's sales, low-stock items and upcoming events.
+ * <p>
+ * The panel never repaints in response to an individual change.
+ * A Swing timer checks the {@link LiveMetrics} dirty flag at most {@code maxRepaintsPerSecond} times a second
+ * and refreshes the tiles only when something changed, so a burst of writes costs one repaint.
+ * The tiles are also refreshed once a minute because upcoming events expire as time passes.
+ */
+public class LiveMetricsPanel extends JPanel {
+    private static final int MINUTE_MILLIS = 60_000;
+
+    private final LiveMetrics metrics;
+    private final JLabel lblActiveMembers = tileValue();
+    private final JLabel lblTodaySales = tileValue();
+    private final JLabel lblLowStock = tileValue();
+    private final JLabel lblUpcomingEvents = tileValue();
+    private final Timer refreshTimer;
+    private long lastRefresh;
+
+    /**
+     * Creates the panel and starts its refresh timer.
+     *
+     * @param metrics              The metrics to display.
+     * @param maxRepaintsPerSecond The maximum number of refreshes per second.
+     */
+    public LiveMetricsPanel(LiveMetrics metrics, int maxRepaintsPerSecond) {
+        this.metrics = metrics;
+        setOpaque(false);
+        setLayout(new GridLayout(1, 4, 20, 0));
+        add(tile("ACTIVE MEMBERS", lblActiveMembers));
+        add(tile("TODAY'S SALES (KSh)", lblTodaySales));
+        add(tile("LOW-STOCK ITEMS", lblLowStock));
+        add(tile("UPCOMING EVENTS", lblUpcomingEvents));
+
+        refreshTimer = new Timer(Math.max(1, 1000 / maxRepaintsPerSecond), e -> refreshIfDirty());
+    }
+
+    /**
+     * Starts the refresh timer when the panel is shown, including again after it was removed.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refreshTimer.start();
+    }
+
+    /**
+     * Stops the refresh timer when the panel leaves the screen.
+     */
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Copies the metrics into the tiles if they changed since the last refresh (or a minute has passed).
+     */
+    private void refreshIfDirty() {
+        long now = System.currentTimeMillis();
+        if (!metrics.takeDirty() && now - lastRefresh < MINUTE_MILLIS) {
+            return;
+        }
+        lastRefresh = now;
+        NumberFormat number = NumberFormat.getIntegerInstance();
+        lblActiveMembers.setText(number.format(metrics.getActiveMembers()));
+        lblTodaySales.setText(number.format(Math.round(metrics.getTodaySales())));
+        lblLowStock.setText(number.format(metrics.getLowStockItems()));
+        lblUpcomingEvents.setText(number.format(metrics.getUpcomingEvents()));
+    }
+
+    private static JLabel tileValue() {
+        JLabel label = new JLabel("-", SwingConstants.CENTER);
+        label.setFont(new Font("Segoe", Font.BOLD, 36));
+        label.setForeground(Constant.btnColor);
+        return label;
+    }
+
+    private static JPanel tile(String title, JLabel value) {
+        JPanel tile = new JPanel(new BorderLayout());
+        tile.setBackground(new Color(255, 255, 255, 220));
+        tile.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        JLabel lblTitle = new JLabel(title, SwingConstants.CENTER);
+        lblTitle.setFont(new Font("Segoe", Font.BOLD, 12));
+        tile.add(lblTitle, BorderLayout.NORTH);
+        tile.add(value, BorderLayout.CENTER);
+        return tile;
+    }
+}
@@ -0,0 +1,312 @@
+package org.club;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Headless load driver that simulates many front-desk terminals against MongoDB or an {@link InMemoryStore}.
+ * <p>
+ * Each terminal runs on its own virtual thread and repeatedly picks an operation from a weighted mix:
+ * a login, a member lookup, a store sale or a seven-day sales report.
+ * Latencies are recorded per operation in a {@link LatencyRecorder}, and throughput and percentiles are
+ * printed every ten seconds and at the end of the run.
+ * <p>
+ * With {@code --target memory} the driver first fills a fresh store with {@link DataGenerator}.
+ * With {@code --target mongo} it expects data generated earlier by {@link DataGenerator}.
+ * With {@code --target service} it goes through {@link Constant#getClubService()}, which drives a shared
+ * {@link ClubServer} when {@code CLUB_SERVER_URL} is set.
+ * <p>
+ * Usage: {@code LoadDriver [--target mongo|memory|service] [--terminals N] [--seconds N] [--think-ms N]
+ * [--mix login:30,lookup:40,sale:25,report:5] [--members N] [--items N]}
+ */
+public class LoadDriver {
+    /**
+     * The operations a front-desk terminal performs.
+     */
+    interface Workload {
+        /**
+         * Checks a username and password.
+         *
+         * @return True if the credentials match a member.
+         */
+        boolean login(String username, String password);
+
+        /**
+         * Looks up a member by username.
+         *
+         * @return The member, or {@code null} if there is none.
+         */
+        Document lookup(String username);
+
+        /**
+         * Sells an item to a member, decrementing stock and recording the transaction.
+         */
+        void sale(String username, String sku, int quantity);
+
+        /**
+         * Totals the transaction amounts since the given date.
+         *
+         * @return The total amount.
+         */
+        double report(Date since);
+    }
+
+    private final Workload workload;
+    private final int members;
+    private final int items;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    LoadDriver(Workload workload, int members, int items) {
+        this.workload = workload;
+        this.members = members;
+        this.items = items;
+    }
+
+    /**
+     * The entry point of the load driver.
+     *
+     * @param args The command-line options described in the class documentation.
+     * @throws InterruptedException If the driver is interrupted while waiting for the terminals.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = DataGenerator.parseOptions(args);
+        int terminals = Integer.parseInt(options.getOrDefault("terminals", "12"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "60"));
+        int thinkMillis = Integer.parseInt(options.getOrDefault("think-ms", "0"));
+        int[] mix = parseMix(options.getOrDefault("mix", "login:30,lookup:40,sale:25,report:5"));
+
+        LoadDriver driver;
+        if ("memory".equals(options.get("target"))) {
+            int members = Integer.parseInt(options.getOrDefault("members", "100000"));
+            int items = Integer.parseInt(options.getOrDefault("items", "500"));
+            InMemoryStore store = new InMemoryStore();
+            try (DataGenerator generator = new DataGenerator(DataGenerator.memorySink(store), 1000,
+                    Runtime.getRuntime().availableProcessors())) {
+                generator.generateAll(members, items, members / 2, members * 10);
+            }
+            driver = new LoadDriver(memoryWorkload(store), members, items);
+        } else {
+            MongoDatabase database = Constant.getDatabase();
+            int members = (int) database.getCollection("member").estimatedDocumentCount();
+            int items = (int) database.getCollection("item").estimatedDocumentCount();
+            Workload workload = "service".equals(options.get("target"))
+                    ? serviceWorkload(Constant.getClubService())
+                    : mongoWorkload(database, Constant.getEventHistory());
+            driver = new LoadDriver(workload, members, items);
+        }
+        driver.run(terminals, Duration.ofSeconds(seconds), thinkMillis, mix);
+    }
+
+    /**
+     * Runs the given number of terminals for the given duration and prints the latency report.
+     *
+     * @param terminals   The number of concurrent terminals.
+     * @param duration    How long to drive load.
+     * @param thinkMillis The pause between two operations of one terminal.
+     * @param mix         Cumulative weights for login, lookup, sale and report.
+     * @throws InterruptedException If the driver is interrupted while waiting for the terminals.
+     */
+    void run(int terminals, Duration duration, int thinkMillis, int[] mix) throws InterruptedException {
+        Instant end = Instant.now().plus(duration);
+        System.out.printf("Driving %d terminals for %d s%n", terminals, duration.toSeconds());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < terminals; i++) {
+                executor.submit(() -> terminal(end, thinkMillis, mix));
+            }
+            while (Instant.now().isBefore(end)) {
+                Thread.sleep(Math.min(10_000, Math.max(1, Duration.between(Instant.now(), end).toMillis())));
+                System.out.println(recorder.report());
+            }
+        }
+    }
+
+    /**
+     * One simulated terminal: performs weighted random operations until the end time.
+     */
+    private void terminal(Instant end, int thinkMillis, int[] mix) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (Instant.now().isBefore(end)) {
+            int member = random.nextInt(Math.max(1, members));
+            int roll = random.nextInt(mix[3]);
+            String operation = roll < mix[0] ? "login" : roll < mix[1] ? "lookup" : roll < mix[2] ? "sale" : "report";
+            long start = System.nanoTime();
+            try {
+                switch (operation) {
+                    case "login" -> workload.login("member" + member, "password" + member);
+                    case "lookup" -> workload.lookup("member" + member);
+                    case "sale" -> workload.sale("member" + member, DataGenerator.sku(random.nextInt(Math.max(1, items))), 1);
+                    default -> workload.report(Date.from(Instant.now().minus(Duration.ofDays(7))));
+                }
+                recorder.record(operation, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                recorder.recordError(operation);
+            }
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(thinkMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses an operation mix such as {@code login:30,lookup:40,sale:25,report:5} into cumulative weights.
+     */
+    private static int[] parseMix(String mix) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.split(":");
+            weights.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        int[] cumulative = new int[4];
+        int total = 0;
+        List<String> order = List.of("login", "lookup", "sale", "report");
+        for (int i = 0; i < order.size(); i++) {
+            total += weights.getOrDefault(order.get(i), 0);
+            cumulative[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Operation mix has no weight: " + mix);
+        }
+        return cumulative;
+    }
+
+    /**
+     * Creates a workload running against MongoDB.
+     *
+     * @param database The database populated by {@link DataGenerator}.
+     * @param history  The event history of that database, which holds the settled transactions.
+     * @return The MongoDB workload.
+     */
+    static Workload mongoWorkload(MongoDatabase database, EventHistory history) {
+        MongoCollection<Document> members = database.getCollection("member");
+        MongoCollection<Document> items = database.getCollection("item");
+        MongoCollection<Document> transactions = database.getCollection("transaction");
+        return new Workload() {
+            @Override
+            public boolean login(String username, String password) {
+                // Passwords may have been upgraded to hashes by earlier logins through the credential service
+                Document member = members.find(Filters.eq("username", username)).first();
+                return member != null && Constant.getPasswordHasher().verify(password, member.getString("password"));
+            }
+
+            @Override
+            public Document lookup(String username) {
+                return members.find(Filters.eq("username", username)).first();
+            }
+
+            @Override
+            public void sale(String username, String sku, int quantity) {
+                Document item = items.findOneAndUpdate(Filters.and(Filters.eq("sku", sku), Filters.gte("stock", quantity)),
+                        Updates.inc("stock", -quantity));
+                if (item != null) {
+                    transactions.insertOne(new Document("date", new Date()).append("member", username)
+                            .append("type", "sale").append("sku", sku).append("quantity", quantity)
+                            .append("amount", item.get("price", Number.class).doubleValue() * quantity));
+                }
+            }
+
+            @Override
+            public double report(Date since) {
+                // Settled transactions have moved to the history, so the report reads both through it
+                return history.salesReport(since, new Date()).get("total", Number.class).doubleValue();
+            }
+        };
+    }
+
+    /**
+     * Creates a workload running through a {@link ClubService}, local or remote.
+     *
+     * @param service The service to drive.
+     * @return The service workload.
+     */
+    static Workload serviceWorkload(ClubService service) {
+        return new Workload() {
+            @Override
+            public boolean login(String username, String password) {
+                return service.authenticate(username, password, "member");
+            }
+
+            @Override
+            public Document lookup(String username) {
+                return service.findMember(username);
+            }
+
+            @Override
+            public void sale(String username, String sku, int quantity) {
+                service.recordSale(username, sku, quantity);
+            }
+
+            @Override
+            public double report(Date since) {
+                return service.salesReport(since).get("total", Number.class).doubleValue();
+            }
+        };
+    }
+
+    /**
+     * Creates a workload running against an in-memory store.
+     * Username and SKU lookups use hash indexes, the report is a full scan, as it would be without an index.
+     *
+     * @param store The store populated by {@link DataGenerator}.
+     * @return The in-memory workload.
+     */
+    static Workload memoryWorkload(InMemoryStore store) {
+        InMemoryStore.StoreCollection members = store.collection("member");
+        InMemoryStore.StoreCollection items = store.collection("item");
+        InMemoryStore.StoreCollection transactions = store.collection("transaction");
+        members.createIndex("username");
+        items.createIndex("sku");
+        return new Workload() {
+            @Override
+            public boolean login(String username, String password) {
+                Document member = members.findFirst("username", username);
+                return member != null && Constant.getPasswordHasher().verify(password, member.getString("password"));
+            }
+
+            @Override
+            public Document lookup(String username) {
+                return members.findFirst("username", username);
+            }
+
+            @Override
+            public void sale(String username, String sku, int quantity) {
+                Document item = items.findFirst("sku", sku);
+                if (item == null) {
+                    return;
+                }
+                Document updated = items.update(item.get("_id"), current -> current.getInteger("stock") < quantity
+                        ? null
+                        : new Document(current).append("stock", current.getInteger("stock") - quantity));
+                if (updated == null) {
+                    return;
+                }
+                transactions.insertOne(new Document("date", new Date()).append("member", username)
+                        .append("type", "sale").append("sku", sku).append("quantity", quantity)
+                        .append("amount", item.get("price", Number.class).doubleValue() * quantity));
+            }
+
+            @Override
+            public double report(Date since) {
+                return transactions.find(document -> !document.getDate("date").before(since))
+                        .mapToDouble(document -> document.get("amount", Number.class).doubleValue())
+                        .sum();
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package org.club;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A {@link ClubService} that runs every operation directly against MongoDB.
+ * <p>
+ * One instance is meant to be shared by the whole process: it uses the shared database handle (and therefore
+ * one connection pool), serves the store catalogue, sports and fee schedules from a {@link NearCache}, and
+ * records sales through the local {@link TransactionJournal} so a sale is confirmed as soon as it is durable
+ * on disk; the journal's shipper later applies each sale, stock decrement included, through the
+ * {@link CheckoutService}.
+ * Sales reports are served by the {@link EventHistory}, which reads monthly rollups for complete months.
+ * Logins are checked by the {@link CredentialService} against salted password hashes.
+ * The live dashboard KPIs are kept by one {@link LiveMetricsFeed}, started on first use, so a server answers
+ * every terminal's dashboard from a single change stream.
+ */
+public class LocalClubService implements ClubService {
+    private final MongoDatabase database;
+    private final Supplier<TransactionJournal> journal;
+    private final NearCache referenceCache;
+    private final Supplier<EventHistory> history;
+    private final Supplier<CredentialService> credentials;
+    private LiveMetrics liveMetrics;
+    private LiveMetricsFeed liveMetricsFeed;
+
+    /**
+     * Creates a service on the given database.
+     *
+     * @param database       The club database.
+     * @param journal        Supplies the transaction journal; called on the first sale only.
+     * @param referenceCache The near-cache for the reference collections.
+     * @param history        Supplies the event history; called on the first report only.
+     * @param credentials    Supplies the credential service; called on the first login only.
+     */
+    public LocalClubService(MongoDatabase database, Supplier<TransactionJournal> journal, NearCache referenceCache,
+                            Supplier<EventHistory> history, Supplier<CredentialService> credentials) {
+        this.database = database;
+        this.journal = journal;
+        this.referenceCache = referenceCache;
+        this.history = history;
+        this.credentials = credentials;
+    }
+
+    @Override
+    public boolean authenticate(String username, String password, String collection) {
+        return credentials.get().authenticate(username, password, collection);
+    }
+
+    @Override
+    public String login(String username, String password) {
+        return credentials.get().login(username, password);
+    }
+
+    @Override
+    public Document findMember(String username) {
+        return database.getCollection("member").find(Filters.eq("username", username))
+                .projection(Projections.exclude("password"))
+                .first();
+    }
+
+    @Override
+    public List<Document> listItems() {
+        return referenceCache.all("item");
+    }
+
+    @Override
+    public List<Document> referenceData(String collection) {
+        if (!NearCache.REFERENCE_COLLECTIONS.contains(collection)) {
+            throw new IllegalArgumentException("Not a reference collection: " + collection);
+        }
+        return referenceCache.all(collection);
+    }
+
+    @Override
+    public String recordSale(String username, String sku, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        Document item = referenceCache.get("item", "sku", sku);
+        if (item == null) {
+            throw new IllegalArgumentException("Unknown item: " + sku);
+        }
+
+        Document sale = new Document("date", new Date()).append("member", username)
+                .append("type", "sale").append("sku", sku).append("quantity", quantity)
+                .append("amount", item.get("price", Number.class).doubleValue() * quantity);
+        // The sale is confirmed once it is durable in the local journal; the shipper applies it to Atlas later,
+        // decrementing the stock in the same transaction that stores the sale
+        return journal.get().append("transaction", sale).join();
+    }
+
+    @Override
+    public Document salesReport(Date since) {
+        return history.get().salesReport(since, new Date());
+    }
+
+    @Override
+    public synchronized Document liveMetrics() {
+        if (liveMetricsFeed == null) {
+            liveMetrics = new LiveMetrics();
+            liveMetricsFeed = LiveMetricsFeed.fromMongo(database, liveMetrics);
+        }
+        return liveMetrics.toDocument();
+    }
+}
@@ -1,15 +1,10 @@
 package org.club;
 
-import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
-import org.bson.Document;
-
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Represents a login window for a sports club system.
@@ -114,42 +109,25 @@ public class Login extends JFrame {
     }
 
     /**
-     * Authenticates a user against a specific collection in MongoDB.
-     * This method connects to the MongoDB server using the provided connection string,
-     * accesses the 'sports_club_system' database, and queries the specified collection
-     * to find a user with the provided username and password.
+     * Authenticates a user against a specific user collection.
+     * The check is delegated to the configured {@link ClubService}, which either queries the shared
+     * database connection or forwards the request to the club server, instead of opening a new
+     * MongoDB connection for every attempt.
+     * The password is checked against a salted hash, which takes a noticeable time, so this method must
+     * not be called on the event dispatch thread.
      *
-     * @param connectionString The MongoDB connection string.
-     * @param enteredUsername  The username entered by the user for authentication.
-     * @param enteredPassword  The password entered by the user for authentication.
-     * @param collectionName   The name of the collection to authenticate against.
+     * @param enteredUsername The username entered by the user for authentication.
+     * @param enteredPassword The password entered by the user for authentication.
+     * @param collectionName  The name of the collection to authenticate against.
      * @return True if the authentication is successful, indicating that the user was found,
      * false otherwise.
+     * @see Constant#getClubService()
      */
-    public static boolean authenticateUser(String connectionString, String enteredUsername, String enteredPassword, String collectionName) {
+    public static boolean authenticateUser(String enteredUsername, String enteredPassword, String collectionName) {
         try {
-            // Step 1: Set up MongoClient settings
-            MongoClient mongoClient = MongoClients.create(connectionString);
-
-            // Step 2: Access the 'sports_club_system' database
-            MongoDatabase database = mongoClient.getDatabase("sports_club_system");
-
-            // Step 3: Access the specified collection
-            MongoCollection<Document> collection = database.getCollection(collectionName);
-
-            // Step 4: Create a query to find the user with the provided username and password
-            Document query = new Document("username", enteredUsername).append("password", enteredPassword);
-
-            // Step 5: Execute the query and retrieve the first matching document (user)
-            Document foundUser = collection.find(query).first();
-
-            // Step 6: Close the MongoClient connection when done
-            mongoClient.close();
-
-            // Step 7: Check if the user was found
-            return foundUser != null;
+            return Constant.getClubService().authenticate(enteredUsername, enteredPassword, collectionName);
         } catch (Exception e) {
-            // Step 8: Handle connection errors
+            // Handle connection errors
             System.err.println("Authentication failed: " + e.getMessage());
             return false;
         }
@@ -178,10 +156,10 @@ public class Login extends JFrame {
      *
      * @see Constant#setUpJFrame(JFrame, String, int, int) for setting up the main frame.
      * @see SetBackgroundImage for creating a background image panel.
-     * @see Constant#resizeIcon(ImageIcon, int, int) for resizing icons.
+     * @see ResourceLoader for the icons, which are pre-scaled to the sizes used here.
      * @see Constant#lblAddMouseListener(javax.swing.JLabel, javax.swing.JTextField) for mouse listeners on labels.
      * @see Constant#setJButton(javax.swing.JButton) for setting up button styles.
-     * @see #authenticateUser(String, String, String, String) for handling user authentication.
+     * @see #authenticateUser(String, String, String) for handling user authentication.
      */
     private void initializeComponents() {
         // Step 1: Set up the main login frame
@@ -195,7 +173,7 @@ public class Login extends JFrame {
         pLoginImage.setPreferredSize(new Dimension(500, 160));
         pLoginImage.setOpaque(false);
         lblLoginImage = new JLabel();
-        lblLoginImage.setIcon(Constant.resizeIcon(ResourceLoader.loginImage, 170, 170));
+        lblLoginImage.setIcon(ResourceLoader.loginImage);
         pLoginImage.add(lblLoginImage);
 
         // Step 4: Initialize and configure the main panel (pMain)
@@ -209,21 +187,21 @@ public class Login extends JFrame {
         // ... (setting bounds, icons, and mouse listeners)
         lblUsername = new JLabel();
         lblUsername.setBounds(10, 0, 120, 120);
-        lblUsername.setIcon(Constant.resizeIcon(ResourceLoader.userIcon, 60, 60));
+        lblUsername.setIcon(ResourceLoader.userIcon);
         txtUsername = new JTextField();
         txtUsername.setBounds(75, 30, 400, 60);
         Constant.lblAddMouseListener(lblUsername, txtUsername);
 
         lblPassword = new JLabel();
         lblPassword.setBounds(10, 70, 120, 120);
-        lblPassword.setIcon(Constant.resizeIcon(ResourceLoader.passwdIcon, 60, 60));
+        lblPassword.setIcon(ResourceLoader.passwdIcon);
         txtPassword = new JPasswordField();
         txtPassword.setBounds(75, 100, 400, 60);
         txtPassword.setEchoChar('*');
         Constant.lblAddMouseListener(lblPassword, txtPassword);
 
         chkShowPassword = new JCheckBox();
-        chkShowPassword.setIcon(Constant.resizeIcon(ResourceLoader.hideIcon, 20, 20));
+        chkShowPassword.setIcon(ResourceLoader.hideIcon);
         chkShowPassword.setBounds(72, 180, 150, 30);
         chkShowPassword.setText("SHOW PASSWORD");
         chkShowPassword.setFont(new Font("Segoe", Font.BOLD, 12));
@@ -238,10 +216,10 @@ public class Login extends JFrame {
             // Toggle password visibility based on checkbox state
             if (txtPassword.getEchoChar() == '*') {
                 txtPassword.setEchoChar((char) 0);
-                chkShowPassword.setIcon(Constant.resizeIcon(ResourceLoader.showIcon, 20, 20));
+                chkShowPassword.setIcon(ResourceLoader.showIcon);
             } else {
                 txtPassword.setEchoChar('*');
-                chkShowPassword.setIcon(Constant.resizeIcon(ResourceLoader.hideIcon, 20, 20));
+                chkShowPassword.setIcon(ResourceLoader.hideIcon);
             }
         });
         // ... (additional mouse listener for focusing on password field)
@@ -264,7 +242,7 @@ public class Login extends JFrame {
         // Step 7: Initialize and configure the "Forgot Password" button (btnResetPassword)
         btnResetPassword = new JButton("FORGOT PASSWORD?");
         // ... (additional button configuration)
-        btnResetPassword.setIcon(Constant.resizeIcon(ResourceLoader.forgotIcon, 20, 20));
+        btnResetPassword.setIcon(ResourceLoader.forgotIcon);
         Constant.setJButton(btnResetPassword);
 
         // Step 8: Initialize and configure the button panel (pButton)
@@ -281,24 +259,48 @@ public class Login extends JFrame {
             String enteredUsername = getUsernameFromUI();
             String enteredPassword = getPasswordFromUI();
 
-            // Authenticate against the admin collection
-            boolean isAdmin = authenticateUser(Constant.getConnectionString(), enteredUsername, enteredPassword, "admin");
-
-            // Authenticate against the member collection
-            boolean isMember = authenticateUser(Constant.getConnectionString(), enteredUsername, enteredPassword, "member");
-
-            // Handle authentication results
-            if (isAdmin) {
-                JOptionPane.showMessageDialog(null, "Admin login successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                SwingUtilities.invokeLater(AdminDashboard::new);
-                this.dispose();
-            } else if (isMember) {
-                JOptionPane.showMessageDialog(null, "Member login successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                // SwingUtilities.invokeLater(MemberDashboard::new);
-                this.dispose();
-            } else {
-                JOptionPane.showMessageDialog(this, "Invalid credentials. Please try again.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            // Password hashing is slow on purpose, so check the credentials off the event dispatch thread
+            btnLogin.setEnabled(false);
+            new SwingWorker<String, Void>() {
+                @Override
+                protected String doInBackground() {
+                    // Look the username up as an admin and as a member, then verify the one password found
+                    return Constant.getClubService().login(enteredUsername, enteredPassword);
+                }
+
+                @Override
+                protected void done() {
+                    btnLogin.setEnabled(true);
+                    String role;
+                    try {
+                        role = get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        // A busy or unreachable server is not a wrong password
+                        System.err.println("Authentication failed: " + e.getCause().getMessage());
+                        String message = e.getCause() instanceof IllegalStateException
+                                ? e.getCause().getMessage()
+                                : "Could not reach the club database. Please try again later.";
+                        JOptionPane.showMessageDialog(Login.this, message, "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+
+                    // Handle authentication results
+                    if ("admin".equals(role)) {
+                        JOptionPane.showMessageDialog(null, "Admin login successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        SwingUtilities.invokeLater(AdminDashboard::new);
+                        dispose();
+                    } else if ("member".equals(role)) {
+                        JOptionPane.showMessageDialog(null, "Member login successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        // SwingUtilities.invokeLater(MemberDashboard::new);
+                        dispose();
+                    } else {
+                        JOptionPane.showMessageDialog(Login.this, "Invalid credentials. Please try again.", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
         });
         // ... (additional button configuration)
     }
@@ -1,6 +1,7 @@
 package org.club;
 
 import javax.swing.*;
+import java.io.IOException;
 
 /**
  * The main class of the sports club application.
@@ -17,19 +18,50 @@ public class Main {
      * Additionally, it schedules the execution of the Login window on the event dispatch thread
      * using {@code SwingUtilities.invokeLater(Login::new)}.
      * <p>
+     * When started with {@code --server}, no window is shown; instead the headless {@link ClubServer}
+     * is started so that many front-desk terminals can share one connection pool and cache.
+     * <p>
+     * Terminals that talk to the database directly first run {@link InitialSetup}, which brings the schema up
+     * to date and exits the program if a key query would scan a whole collection. Terminals that use a club
+     * server leave this to the server.
+     * <p>
      * Note: The TODO comment suggests that further program development should make the Login
      * screen the starting point for the application.
      *
-     * @param args The command-line arguments provided to the program (not used in this application).
+     * @param args The command-line arguments; {@code --server} starts the headless server mode.
+     * @throws IOException If the server mode cannot bind its port.
+     * @see InitialSetup
      * @see ResourceLoader
      * @see SwingUtilities#invokeLater(Runnable)
      * @see Login
+     * @see ClubServer
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            ClubServer.main(args);
+            return;
+        }
+
+        if (Constant.dotenv.get("CLUB_SERVER_URL", "").isBlank()) {
+            setUpSchema();
+        }
+
         /* Load the required resources */
         new ResourceLoader();
 
         /* TODO: Make the program start with the Login screen */
         SwingUtilities.invokeLater(AdminDashboard::new);
     }
+
+    /**
+     * Runs {@link InitialSetup} on the club database, exiting the program if it fails.
+     */
+    static void setUpSchema() {
+        try {
+            InitialSetup.run(Constant.getDatabase());
+        } catch (RuntimeException e) {
+            System.err.println("Schema setup failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
@@ -0,0 +1,247 @@
+package org.club;
+
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CheckoutService} running against an {@link InMemoryStore}, used to benchmark checkout contention
+ * without a cluster.
+ * <p>
+ * The store has no multi-document transactions, so each step is an atomic single-document
+ * {@link InMemoryStore.StoreCollection#update update}: stock is taken first, and the sale and ledger entry are
+ * written only once it was taken.
+ * Hot items are sharded like {@link ShardedCounter} does it, with the same {@code item_stock} documents; stock
+ * taken from several shards is handed back if they turn out not to hold enough together.
+ * Rebalancing moves stock between shards with paired updates, so concurrent sales are never lost.
+ * Sales recorded from the journal are applied one at a time, so a key is never applied twice.
+ */
+public class MemoryCheckoutService implements CheckoutService {
+    private final InMemoryStore.StoreCollection items;
+    private final InMemoryStore.StoreCollection shards;
+    private final InMemoryStore.StoreCollection sales;
+    private final InMemoryStore.StoreCollection ledger;
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rebalancer;
+
+    /**
+     * Creates a checkout service on the given store and starts the background rebalancer.
+     *
+     * @param store           The store holding the {@code item} collection.
+     * @param rebalanceMillis The interval between two rebalancing passes.
+     */
+    public MemoryCheckoutService(InMemoryStore store, long rebalanceMillis) {
+        this.items = store.collection("item");
+        this.shards = store.collection(ShardedCounter.COLLECTION);
+        this.sales = store.collection("transaction");
+        this.ledger = store.collection("ledger");
+        items.createIndex("sku");
+
+        rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalancer.scheduleWithFixedDelay(() -> shardCounts.keySet().forEach(this::rebalance),
+                rebalanceMillis, rebalanceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String checkout(String username, String sku, int quantity) {
+        Document item = items.findFirst("sku", sku);
+        if (item == null) {
+            throw new IllegalArgumentException("Unknown item: " + sku);
+        }
+        boolean taken = shardCounts.containsKey(sku)
+                ? takeFromShards(sku, quantity)
+                : items.update(item.get("_id"), current -> current.getInteger("stock") < quantity
+                ? null
+                : new Document(current).append("stock", current.getInteger("stock") - quantity)) != null;
+        if (!taken) {
+            throw new IllegalStateException("Out of stock: " + sku);
+        }
+
+        String key = UUID.randomUUID().toString();
+        double amount = item.get("price", Number.class).doubleValue() * quantity;
+        store(new Document("_id", key).append("date", new Date()).append("member", username)
+                .append("type", "sale").append("sku", sku).append("quantity", quantity).append("amount", amount));
+        return key;
+    }
+
+    @Override
+    public synchronized void record(String key, Document sale) {
+        if (sales.findById(key) != null) {
+            return;
+        }
+        String sku = sale.getString("sku");
+        int quantity = sale.get("quantity", Number.class).intValue();
+        Document item = items.findFirst("sku", sku);
+        int taken = 0;
+        if (item != null && shardCounts.containsKey(sku)) {
+            int count = shardCounts.get(sku);
+            for (int shard = 0; shard < count && taken < quantity; shard++) {
+                taken -= add(ShardedCounter.shardId(sku, shard), -(quantity - taken), true);
+            }
+        } else if (item != null) {
+            int[] applied = new int[1];
+            items.update(item.get("_id"), current -> {
+                applied[0] = Math.max(0, Math.min(quantity, current.getInteger("stock")));
+                return new Document(current).append("stock", current.getInteger("stock") - applied[0]);
+            });
+            taken = applied[0];
+        }
+
+        Document stored = new Document(sale).append("_id", key);
+        if (taken < quantity) {
+            stored.append("stockShortfall", quantity - taken);
+            System.err.println("Sale " + key + " of " + sku + " exceeded the recorded stock by " + (quantity - taken));
+        }
+        store(stored);
+    }
+
+    /**
+     * Inserts a sale and charges it to the member's ledger.
+     */
+    private void store(Document sale) {
+        double amount = sale.get("amount", Number.class).doubleValue();
+        Date date = sale.getDate("date");
+        sales.insertOne(sale);
+        ledger.upsert(sale.getString("member"), current -> current == null
+                ? new Document("balance", amount).append("purchases", 1).append("lastPurchase", date)
+                : new Document(current).append("balance", current.getDouble("balance") + amount)
+                .append("purchases", current.getInteger("purchases") + 1).append("lastPurchase", date));
+    }
+
+    @Override
+    public long stock(String sku) {
+        Integer count = shardCounts.get(sku);
+        if (count != null) {
+            long total = 0;
+            for (int shard = 0; shard < count; shard++) {
+                total += stockOf(shards.findById(ShardedCounter.shardId(sku, shard)));
+            }
+            return total;
+        }
+        Document item = items.findFirst("sku", sku);
+        return item == null ? 0 : item.getInteger("stock");
+    }
+
+    @Override
+    public synchronized void shard(String sku, int count) {
+        Document item = items.findFirst("sku", sku);
+        if (item == null) {
+            throw new IllegalArgumentException("Unknown item: " + sku);
+        }
+        // Move the whole stock out of the item first, so no sale can take it twice
+        long[] total = new long[1];
+        items.update(item.get("_id"), current -> {
+            total[0] = current.getInteger("stock");
+            return new Document(current).append("stock", 0).append("shards", count);
+        });
+        Integer previous = shardCounts.get(sku);
+        if (previous != null) {
+            for (int shard = 0; shard < previous; shard++) {
+                Document removed = shards.deleteById(ShardedCounter.shardId(sku, shard));
+                total[0] += stockOf(removed);
+            }
+        }
+        // Shards hold int stock like the items they are split from; a share never exceeds the item's former stock
+        for (int shard = 0; shard < count; shard++) {
+            int share = (int) (total[0] / count + (shard < total[0] % count ? 1 : 0));
+            shards.insertOne(new Document("_id", ShardedCounter.shardId(sku, shard)).append("sku", sku)
+                    .append("shard", shard).append("stock", share));
+        }
+        shardCounts.put(sku, count);
+    }
+
+    @Override
+    public void close() {
+        rebalancer.shutdownNow();
+    }
+
+    /**
+     * Takes stock from one random shard, or from several when none holds enough on its own.
+     */
+    private boolean takeFromShards(String sku, int quantity) {
+        int count = shardCounts.get(sku);
+        int start = ThreadLocalRandom.current().nextInt(count);
+        for (int i = 0; i < count; i++) {
+            if (add(ShardedCounter.shardId(sku, (start + i) % count), -quantity, false) != 0) {
+                return true;
+            }
+        }
+
+        int remaining = quantity;
+        for (int i = 0; i < count && remaining > 0; i++) {
+            remaining += add(ShardedCounter.shardId(sku, (start + i) % count), -remaining, true);
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        // Not enough stock in total: hand back what was taken
+        add(ShardedCounter.shardId(sku, start), quantity - remaining, false);
+        return false;
+    }
+
+    /**
+     * Evens out the shards of an item by moving stock from the fullest shard to the emptiest one, when the
+     * emptiest holds less than half its fair share.
+     */
+    private void rebalance(String sku) {
+        int count = shardCounts.get(sku);
+        String fullest = null;
+        String emptiest = null;
+        long most = -1;
+        long least = Long.MAX_VALUE;
+        long total = 0;
+        for (int shard = 0; shard < count; shard++) {
+            String id = ShardedCounter.shardId(sku, shard);
+            long stock = stockOf(shards.findById(id));
+            total += stock;
+            if (stock > most) {
+                most = stock;
+                fullest = id;
+            }
+            if (stock < least) {
+                least = stock;
+                emptiest = id;
+            }
+        }
+        if (least * 2 * count >= total) {
+            return;
+        }
+        int moved = -add(fullest, -(int) ((most - least) / 2), true);
+        add(emptiest, moved, false);
+    }
+
+    /**
+     * Atomically adds a delta to the stock of a shard.
+     * A negative delta larger than the stock is refused, or, when partial is set, capped at the stock.
+     *
+     * @return The delta actually applied.
+     */
+    private int add(String id, int delta, boolean partial) {
+        int[] applied = new int[1];
+        shards.update(id, current -> {
+            int stock = current.getInteger("stock");
+            int change = stock + delta >= 0 ? delta : partial ? -stock : 0;
+            if (change == 0) {
+                return null;
+            }
+            applied[0] = change;
+            return new Document(current).append("stock", stock + change);
+        });
+        return applied[0];
+    }
+
+    private static long stockOf(Document shard) {
+        return shard == null ? 0 : shard.getInteger("stock");
+    }
+}
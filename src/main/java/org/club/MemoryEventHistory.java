@@ -0,0 +1,221 @@
+package org.club;
+
+import org.bson.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link EventHistory} kept in bucketed {@link InMemoryStore.TimeSeries} collections, used for benchmarks.
+ * <p>
+ * It has the same layout as {@link MongoEventHistory}: transactions and attendance are grouped into daily
+ * buckets per item, fee-paying member or attending member, complete months are rolled up into
+ * {@code transaction_monthly} and {@code attendance_monthly}, and buckets past the retention period are dropped.
+ * Transactions are recorded straight into the history, as the store has no separate operational collection.
+ */
+public class MemoryEventHistory implements EventHistory {
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private final InMemoryStore.TimeSeries transactions;
+    private final InMemoryStore.TimeSeries attendance;
+    private final InMemoryStore.StoreCollection transactionMonthly;
+    private final InMemoryStore.StoreCollection attendanceMonthly;
+    private final Duration settleAfter;
+    private final int retentionDays;
+    private final ScheduledExecutorService maintenance;
+
+    // The end of the rolled-up months, and the earlier months that received events after their rollup
+    private final Map<String, Date> rolledUpThrough = new ConcurrentHashMap<>();
+    private final Map<String, Set<Date>> lateMonths = Map.of("transaction", new ConcurrentSkipListSet<>(),
+            "attendance", new ConcurrentSkipListSet<>());
+
+    /**
+     * Creates the history on the given store and starts the background maintenance.
+     *
+     * @param store             The store to keep the history in.
+     * @param settleAfter       How old an event must be before its month can be rolled up.
+     * @param retentionDays     How long raw events are kept.
+     * @param maintenanceMillis The interval between two maintenance passes.
+     */
+    public MemoryEventHistory(InMemoryStore store, Duration settleAfter, int retentionDays, long maintenanceMillis) {
+        this.transactions = store.timeSeries(MongoEventHistory.TRANSACTION_HISTORY, "date", "meta", DAY_MILLIS);
+        this.attendance = store.timeSeries(MongoEventHistory.ATTENDANCE, "date", "meta", DAY_MILLIS);
+        this.transactionMonthly = store.collection(MongoEventHistory.TRANSACTION_MONTHLY);
+        this.attendanceMonthly = store.collection(MongoEventHistory.ATTENDANCE_MONTHLY);
+        this.settleAfter = settleAfter;
+        this.retentionDays = retentionDays;
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, maintenanceMillis, maintenanceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a sale or fee payment.
+     *
+     * @param transaction The transaction, with at least {@code date}, {@code type} and {@code amount}.
+     */
+    public void recordTransaction(Document transaction) {
+        transactions.insertOne(MongoEventHistory.measurement(transaction));
+        markLate("transaction", transaction.getDate("date"));
+    }
+
+    @Override
+    public void recordAttendance(String username, String sport, Date date) {
+        attendance.insertOne(new Document("date", date).append("meta", username).append("sport", sport));
+        markLate("attendance", date);
+    }
+
+    @Override
+    public Document salesReport(Date from, Date to) {
+        double total = 0;
+        long count = 0;
+        Date[] months = MongoEventHistory.fullMonths(from, to, rolledUpThrough.get("transaction"));
+        if (months != null) {
+            for (Document row : transactionMonthly.all()) {
+                if (inRange(row.getDate("month"), months[0], months[1])) {
+                    total += row.getDouble("total");
+                    count += row.getLong("count");
+                }
+            }
+        }
+        for (Date[] range : rawRanges(from, to, months)) {
+            double[] sums = transactions.range(range[0], range[1])
+                    .collect(() -> new double[2], (acc, transaction) -> {
+                        acc[0] += transaction.get("amount", Number.class).doubleValue();
+                        acc[1]++;
+                    }, (left, right) -> {
+                        left[0] += right[0];
+                        left[1] += right[1];
+                    });
+            total += sums[0];
+            count += (long) sums[1];
+        }
+        return new Document("total", total).append("count", count);
+    }
+
+    @Override
+    public Document attendanceReport(Date from, Date to) {
+        Map<String, Long> sports = new HashMap<>();
+        Date[] months = MongoEventHistory.fullMonths(from, to, rolledUpThrough.get("attendance"));
+        if (months != null) {
+            for (Document row : attendanceMonthly.all()) {
+                if (inRange(row.getDate("month"), months[0], months[1])) {
+                    sports.merge(row.get("_id", Document.class).getString("sport"), row.getLong("sessions"), Long::sum);
+                }
+            }
+        }
+        for (Date[] range : rawRanges(from, to, months)) {
+            attendance.range(range[0], range[1]).forEach(session -> sports.merge(session.getString("sport"), 1L, Long::sum));
+        }
+        long sessions = sports.values().stream().mapToLong(Long::longValue).sum();
+        return new Document("sessions", sessions).append("sports", new Document(sports));
+    }
+
+    @Override
+    public synchronized void maintain() {
+        Date settled = Date.from(Instant.now().minus(settleAfter));
+        Date retained = Date.from(Instant.now().minus(Duration.ofDays(retentionDays)));
+        rollUp("transaction", transactions, settled, retained);
+        rollUp("attendance", attendance, settled, retained);
+        transactions.expireBefore(retained);
+        attendance.expireBefore(retained);
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+    }
+
+    private void markLate(String name, Date date) {
+        Date through = rolledUpThrough.get(name);
+        if (through != null && date.before(through)) {
+            lateMonths.get(name).add(MongoEventHistory.monthStart(date));
+        }
+    }
+
+    /**
+     * Rolls up the complete months not rolled up yet, the last rolled-up month again and the months that
+     * received late events, skipping months whose raw events may have started to expire.
+     */
+    private void rollUp(String name, InMemoryStore.TimeSeries raw, Date settled, Date retained) {
+        Date through = rolledUpThrough.get(name);
+        Date start;
+        if (through == null) {
+            Date earliest = raw.earliest();
+            if (earliest == null) {
+                return;
+            }
+            start = MongoEventHistory.monthStart(earliest);
+        } else {
+            start = MongoEventHistory.previousMonth(through);
+        }
+        Date end = MongoEventHistory.monthStart(settled);
+
+        SortedSet<Date> months = new TreeSet<>();
+        Set<Date> late = lateMonths.get(name);
+        for (Date month : late) {
+            late.remove(month);
+            months.add(month);
+        }
+        for (Date month = start; month.before(end); month = MongoEventHistory.nextMonth(month)) {
+            months.add(month);
+        }
+        for (Date month : months) {
+            if (through == null || !month.before(through) || !month.before(retained)) {
+                rollUpMonth(name, raw, month);
+            }
+        }
+        if (start.before(end) && (through == null || through.before(end))) {
+            rolledUpThrough.put(name, end);
+        }
+    }
+
+    private void rollUpMonth(String name, InMemoryStore.TimeSeries raw, Date month) {
+        Map<Document, Document> rows = new HashMap<>();
+        raw.range(month, MongoEventHistory.nextMonth(month)).forEach(event -> {
+            if ("transaction".equals(name)) {
+                Document key = new Document("month", month).append("type", event.get("type"))
+                        .append("sku", event.get("sku")).append("sport", event.get("sport"));
+                Document row = rows.computeIfAbsent(key, k -> new Document("_id", k).append("month", month)
+                        .append("total", 0.0).append("count", 0L).append("quantity", 0L));
+                row.put("total", row.getDouble("total") + event.get("amount", Number.class).doubleValue());
+                row.put("count", row.getLong("count") + 1);
+                Number quantity = event.get("quantity", Number.class);
+                row.put("quantity", row.getLong("quantity") + (quantity == null ? 0 : quantity.longValue()));
+            } else {
+                Document key = new Document("month", month).append("sport", event.get("sport"));
+                Document row = rows.computeIfAbsent(key, k -> new Document("_id", k).append("month", month)
+                        .append("sessions", 0L));
+                row.put("sessions", row.getLong("sessions") + 1);
+            }
+        });
+        InMemoryStore.StoreCollection monthly = "transaction".equals(name) ? transactionMonthly : attendanceMonthly;
+        rows.values().forEach(monthly::insertOne);
+    }
+
+    private static Date[][] rawRanges(Date from, Date to, Date[] months) {
+        if (months == null) {
+            return new Date[][]{{from, to}};
+        }
+        return new Date[][]{{from, months[0]}, {months[1], to}};
+    }
+
+    private static boolean inRange(Date date, Date from, Date to) {
+        return !date.before(from) && date.before(to);
+    }
+}
@@ -0,0 +1,152 @@
+package org.club;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A {@link CheckoutService} that runs every checkout as a MongoDB multi-document transaction.
+ * <p>
+ * One transaction decrements the stock (on the item itself, or on one of its sub-counters when the item is
+ * sharded by a {@link ShardedCounter}), inserts the sale into {@code transaction} and charges the member's
+ * running total in {@code ledger}.
+ * Write conflicts between terminals selling the same item are retried a bounded number of times by a
+ * {@link TransactionRunner}.
+ * <p>
+ * A checkout is confirmed only once it is committed in the cluster, so it can refuse a sale when the item is out
+ * of stock.
+ * Sales confirmed earlier from the local journal by {@link LocalClubService#recordSale} go through
+ * {@link #record}, which applies them the same way when they are shipped.
+ * <p>
+ * Every sale's key is also written to {@code sale_key} in the same transaction. Settled sales are moved out of
+ * {@code transaction} by {@link MongoEventHistory}, but their keys stay, so a journal replaying an old sale
+ * never applies it twice.
+ */
+public class MongoCheckoutService implements CheckoutService {
+    /**
+     * The collection holding the key of every applied sale; it is never archived.
+     */
+    static final String SALE_KEYS = "sale_key";
+
+    private final TransactionRunner transactions;
+    private final ShardedCounter counter;
+    private final MongoCollection<Document> items;
+    private final MongoCollection<Document> sales;
+    private final MongoCollection<Document> ledger;
+    private final MongoCollection<Document> saleKeys;
+
+    /**
+     * Creates a checkout service on the given database.
+     *
+     * @param database     The club database.
+     * @param transactions Runs the checkout transactions.
+     * @param counter      The sub-counters of the hot items.
+     */
+    public MongoCheckoutService(MongoDatabase database, TransactionRunner transactions, ShardedCounter counter) {
+        this.transactions = transactions;
+        this.counter = counter;
+        this.items = database.getCollection("item");
+        this.sales = database.getCollection("transaction");
+        this.ledger = database.getCollection("ledger");
+        this.saleKeys = database.getCollection(SALE_KEYS);
+    }
+
+    @Override
+    public String checkout(String username, String sku, int quantity) {
+        String key = UUID.randomUUID().toString();
+        return transactions.run(session -> {
+            // The number of shards is read in the transaction: another process may have split the item
+            Document item = items.find(session, Filters.eq("sku", sku))
+                    .projection(Projections.include("price", "shards")).first();
+            if (item == null) {
+                throw new IllegalArgumentException("Unknown item: " + sku);
+            }
+            int shards = item.getInteger("shards", 0);
+            boolean taken = shards > 0
+                    ? counter.decrement(session, sku, quantity, shards)
+                    : items.updateOne(session, Filters.and(Filters.eq("sku", sku), Filters.gte("stock", quantity)),
+                    Updates.inc("stock", -quantity)).getModifiedCount() == 1;
+            if (!taken) {
+                throw new IllegalStateException("Out of stock: " + sku);
+            }
+
+            Date now = new Date();
+            double amount = item.get("price", Number.class).doubleValue() * quantity;
+            store(session, new Document("_id", key).append("date", now).append("member", username)
+                    .append("type", "sale").append("sku", sku).append("quantity", quantity).append("amount", amount));
+            return key;
+        });
+    }
+
+    @Override
+    public void record(String key, Document sale) {
+        long shortfall = transactions.run(session -> {
+            // Sales applied before sale keys were kept are still found in transaction until they are archived
+            if (saleKeys.find(session, Filters.eq("_id", key)).first() != null
+                    || sales.find(session, Filters.eq("_id", key)).projection(Projections.include("_id")).first() != null) {
+                return 0L;
+            }
+            String sku = sale.getString("sku");
+            int quantity = sale.get("quantity", Number.class).intValue();
+            Document item = items.find(session, Filters.eq("sku", sku))
+                    .projection(Projections.include("stock", "shards")).first();
+            long taken = 0;
+            if (item != null && item.getInteger("shards", 0) > 0) {
+                taken = counter.decrementAvailable(session, sku, quantity, item.getInteger("shards"));
+            } else if (item != null) {
+                // An item without a stock field has nothing left to take
+                Number stock = item.get("stock", Number.class);
+                taken = Math.max(0, Math.min(quantity, stock == null ? 0 : stock.longValue()));
+                items.updateOne(session, Filters.and(Filters.eq("sku", sku), Filters.gte("stock", taken)),
+                        Updates.inc("stock", -taken));
+            }
+
+            Document stored = new Document(sale).append("_id", key);
+            if (taken < quantity) {
+                stored.append("stockShortfall", quantity - taken);
+            }
+            store(session, stored);
+            return quantity - taken;
+        });
+        if (shortfall > 0) {
+            System.err.println("Sale " + key + " of " + sale.getString("sku") + " exceeded the recorded stock by "
+                    + shortfall);
+        }
+    }
+
+    /**
+     * Inserts a sale and its key and charges it to the member's ledger, within the caller's transaction.
+     */
+    private void store(ClientSession session, Document sale) {
+        double amount = sale.get("amount", Number.class).doubleValue();
+        saleKeys.insertOne(session, new Document("_id", sale.get("_id")).append("date", sale.getDate("date")));
+        sales.insertOne(session, sale);
+        ledger.updateOne(session, Filters.eq("_id", sale.getString("member")),
+                Updates.combine(Updates.inc("balance", amount), Updates.inc("purchases", 1),
+                        Updates.set("lastPurchase", sale.getDate("date"))),
+                new UpdateOptions().upsert(true));
+    }
+
+    @Override
+    public long stock(String sku) {
+        return counter.total(sku);
+    }
+
+    @Override
+    public void shard(String sku, int shards) {
+        counter.split(sku, shards);
+    }
+
+    @Override
+    public void close() {
+        counter.close();
+    }
+}
@@ -0,0 +1,448 @@
+package org.club;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link EventHistory} kept in MongoDB time-series collections.
+ * <p>
+ * Sales and fee payments keep arriving in the regular {@code transaction} collection, because the
+ * {@link TransactionJournal} relies on idempotent upserts, checkouts on multi-document transactions and the
+ * live dashboard on change streams, none of which time-series collections support.
+ * Once a transaction has settled (a day old by default) it is moved into the {@code transaction_history}
+ * time-series collection, with the item SKU of a sale or the member of a fee payment as its {@code meta}
+ * field.
+ * Attendance is written straight to the {@code attendance} time-series collection, with the member as
+ * {@code meta}.
+ * Both use hourly granularity and expire raw events after the retention period.
+ * <p>
+ * Complete months are rolled up with {@code $merge} into {@code transaction_monthly} (per type, item and sport)
+ * and {@code attendance_monthly} (per sport), before their raw events can expire.
+ * A report reads the rollups for the complete months of its range and the raw events only for the partial
+ * months at its edges; those raw reads match on the time field, which MongoDB answers from the bucket bounds
+ * without unpacking buckets outside the range.
+ * <p>
+ * Maintenance runs in the background on every terminal, but a lease in {@code timeseries_progress} lets only
+ * one of them work at a time.
+ * Time-series collections need MongoDB 5.0 or later.
+ */
+public class MongoEventHistory implements EventHistory {
+    static final String TRANSACTION_HISTORY = "transaction_history";
+    static final String TRANSACTION_MONTHLY = "transaction_monthly";
+    static final String ATTENDANCE = "attendance";
+    static final String ATTENDANCE_MONTHLY = "attendance_monthly";
+    private static final String PROGRESS = "timeseries_progress";
+    private static final int ARCHIVE_BATCH = 5_000;
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> transactions;
+    private final MongoCollection<Document> history;
+    private final MongoCollection<Document> transactionMonthly;
+    private final MongoCollection<Document> attendance;
+    private final MongoCollection<Document> attendanceMonthly;
+    private final MongoCollection<Document> progress;
+    private final Duration settleAfter;
+    private final int retentionDays;
+    private final String owner = UUID.randomUUID().toString();
+    private final ScheduledExecutorService maintenance;
+
+    // The end of the rolled-up months per raw collection; reports read raw events after it
+    private final Map<String, Date> rolledUpThrough = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the time-series collections if necessary and starts the background maintenance.
+     *
+     * @param database          The club database.
+     * @param settleAfter       How old a transaction must be before it is moved to the history.
+     * @param retentionDays     How long raw events are kept.
+     * @param maintenanceMillis The interval between two maintenance passes.
+     */
+    public MongoEventHistory(MongoDatabase database, Duration settleAfter, int retentionDays, long maintenanceMillis) {
+        this.database = database;
+        this.transactions = database.getCollection("transaction");
+        this.history = database.getCollection(TRANSACTION_HISTORY);
+        this.transactionMonthly = database.getCollection(TRANSACTION_MONTHLY);
+        this.attendance = database.getCollection(ATTENDANCE);
+        this.attendanceMonthly = database.getCollection(ATTENDANCE_MONTHLY);
+        this.progress = database.getCollection(PROGRESS);
+        this.settleAfter = settleAfter;
+        this.retentionDays = retentionDays;
+
+        createCollections();
+        progress.find(Filters.exists("rolledUpThrough"))
+                .forEach(document -> rolledUpThrough.put(document.getString("_id"), document.getDate("rolledUpThrough")));
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                maintain();
+            } catch (RuntimeException e) {
+                System.err.println("History maintenance failed: " + e.getMessage());
+            }
+        }, 0, maintenanceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordAttendance(String username, String sport, Date date) {
+        attendance.insertOne(new Document("date", date).append("meta", username).append("sport", sport));
+    }
+
+    @Override
+    public Document salesReport(Date from, Date to) {
+        double total = 0;
+        long count = 0;
+        Date[] months = fullMonths(from, to, rolledUpThrough.get("transaction"));
+        if (months != null) {
+            Document rolled = transactionMonthly.aggregate(List.of(
+                    Aggregates.match(Filters.and(Filters.gte("month", months[0]), Filters.lt("month", months[1]))),
+                    Aggregates.group(null, Accumulators.sum("total", "$total"), Accumulators.sum("count", "$count")))).first();
+            if (rolled != null) {
+                total += rolled.get("total", Number.class).doubleValue();
+                count += rolled.get("count", Number.class).longValue();
+            }
+        }
+
+        Bson raw = rawRanges(from, to, months);
+        if (raw != null) {
+            Bson match = Aggregates.match(raw);
+            Document recent = history.aggregate(List.of(match,
+                    Aggregates.unionWith("transaction", List.of(match)),
+                    Aggregates.group(null, Accumulators.sum("total", "$amount"), Accumulators.sum("count", 1)))).first();
+            if (recent != null) {
+                total += recent.get("total", Number.class).doubleValue();
+                count += recent.get("count", Number.class).longValue();
+            }
+        }
+        return new Document("total", total).append("count", count);
+    }
+
+    @Override
+    public Document attendanceReport(Date from, Date to) {
+        Document sports = new Document();
+        Date[] months = fullMonths(from, to, rolledUpThrough.get("attendance"));
+        if (months != null) {
+            attendanceMonthly.aggregate(List.of(
+                    Aggregates.match(Filters.and(Filters.gte("month", months[0]), Filters.lt("month", months[1]))),
+                    Aggregates.group("$_id.sport", Accumulators.sum("sessions", "$sessions"))))
+                    .forEach(row -> addSessions(sports, row));
+        }
+        Bson raw = rawRanges(from, to, months);
+        if (raw != null) {
+            attendance.aggregate(List.of(Aggregates.match(raw), Aggregates.group("$sport", Accumulators.sum("sessions", 1))))
+                    .forEach(row -> addSessions(sports, row));
+        }
+        long sessions = sports.keySet().stream().mapToLong(sports::getLong).sum();
+        return new Document("sessions", sessions).append("sports", sports);
+    }
+
+    @Override
+    public void maintain() {
+        if (!acquireLease()) {
+            return;
+        }
+        try {
+            Date settled = Date.from(Instant.now().minus(settleAfter));
+            Date retained = Date.from(Instant.now().minus(Duration.ofDays(retentionDays)));
+            Set<Date> lateMonths = archive(settled, retained);
+            rollUp("transaction", settled, retained, lateMonths);
+            rollUp("attendance", settled, retained, Set.of());
+
+            // Transactions too old to archive have expired; they only live on in their rollup
+            Date through = rolledUpThrough.get("transaction");
+            if (through != null) {
+                transactions.deleteMany(Filters.lt("date", through.before(retained) ? through : retained));
+            }
+        } finally {
+            progress.updateOne(Filters.and(Filters.eq("_id", "lease"), Filters.eq("owner", owner)),
+                    Updates.set("until", new Date(0)));
+        }
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+    }
+
+    private void createCollections() {
+        Set<String> existing = database.listCollectionNames().into(new HashSet<>());
+        for (String name : List.of(TRANSACTION_HISTORY, ATTENDANCE)) {
+            if (existing.contains(name)) {
+                continue;
+            }
+            try {
+                database.createCollection(name, new CreateCollectionOptions()
+                        .timeSeriesOptions(new TimeSeriesOptions("date").metaField("meta")
+                                .granularity(TimeSeriesGranularity.HOURS))
+                        .expireAfter(retentionDays, TimeUnit.DAYS));
+            } catch (MongoException e) {
+                // Another terminal created it first
+                if (e.getCode() != 48) {
+                    throw e;
+                }
+            }
+        }
+        transactionMonthly.createIndex(Indexes.ascending("month"));
+        attendanceMonthly.createIndex(Indexes.ascending("month"));
+    }
+
+    /**
+     * Takes the maintenance lease, or renews it if this instance already holds it.
+     *
+     * @return False if another instance holds the lease.
+     */
+    private boolean acquireLease() {
+        Date now = new Date();
+        try {
+            return progress.findOneAndUpdate(
+                    Filters.and(Filters.eq("_id", "lease"), Filters.or(Filters.lt("until", now), Filters.eq("owner", owner))),
+                    Updates.combine(Updates.set("owner", owner), Updates.set("until", Date.from(now.toInstant().plus(LEASE)))),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)) != null;
+        } catch (MongoException e) {
+            // The upsert collided with the lease held by another instance
+            if (e.getCode() == 11000) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Moves settled transactions that are still within retention into the time-series history.
+     * Each batch skips the transactions already in the history, so a pass interrupted between the insert and
+     * the delete does not duplicate them.
+     * The keys of archived sales stay in {@code sale_key}, where {@link MongoCheckoutService} checks replayed
+     * sales.
+     *
+     * @return The months of archived transactions that were already rolled up and must be rolled up again.
+     */
+    private Set<Date> archive(Date settled, Date retained) {
+        Set<Date> lateMonths = new HashSet<>();
+        Date through = rolledUpThrough.get("transaction");
+        while (true) {
+            List<Document> batch = transactions.find(Filters.and(Filters.gte("date", retained), Filters.lt("date", settled)))
+                    .sort(Sorts.ascending("date"))
+                    .limit(ARCHIVE_BATCH)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                return lateMonths;
+            }
+            List<Object> ids = batch.stream().map(document -> document.get("_id")).toList();
+            Set<Object> archived = new HashSet<>();
+            history.find(Filters.and(Filters.gte("date", batch.get(0).getDate("date")),
+                            Filters.lte("date", batch.get(batch.size() - 1).getDate("date")), Filters.in("_id", ids)))
+                    .projection(Projections.include("_id"))
+                    .forEach(document -> archived.add(document.get("_id")));
+            List<Document> measurements = batch.stream()
+                    .filter(document -> !archived.contains(document.get("_id")))
+                    .map(MongoEventHistory::measurement)
+                    .toList();
+            if (!measurements.isEmpty()) {
+                history.insertMany(measurements, new InsertManyOptions().ordered(false));
+            }
+            transactions.deleteMany(Filters.in("_id", ids));
+
+            if (through != null) {
+                batch.stream().map(document -> document.getDate("date")).filter(date -> date.before(through))
+                        .forEach(date -> lateMonths.add(monthStart(date)));
+            }
+            if (batch.size() < ARCHIVE_BATCH) {
+                return lateMonths;
+            }
+        }
+    }
+
+    /**
+     * Rolls up every complete month not rolled up yet, the last rolled-up month again in case events arrived
+     * late, and the given late months.
+     * A month whose raw events may already have started to expire is never rolled up again.
+     */
+    private void rollUp(String name, Date settled, Date retained, Set<Date> lateMonths) {
+        Date through = rolledUpThrough.get(name);
+        Date start;
+        if (through == null) {
+            Date earliest = earliest(name);
+            if (earliest == null) {
+                return;
+            }
+            start = monthStart(earliest);
+        } else {
+            start = previousMonth(through);
+        }
+        Date end = monthStart(settled);
+
+        SortedSet<Date> months = new TreeSet<>(lateMonths);
+        for (Date month = start; month.before(end); month = nextMonth(month)) {
+            months.add(month);
+        }
+        for (Date month : months) {
+            if (through == null || !month.before(through) || !month.before(retained)) {
+                rollUpMonth(name, month);
+            }
+        }
+        if (start.before(end) && (through == null || through.before(end))) {
+            progress.updateOne(Filters.eq("_id", name), Updates.set("rolledUpThrough", end), new UpdateOptions().upsert(true));
+            rolledUpThrough.put(name, end);
+        }
+    }
+
+    private void rollUpMonth(String name, Date month) {
+        Bson match = Aggregates.match(Filters.and(Filters.gte("date", month), Filters.lt("date", nextMonth(month))));
+        Document literalMonth = new Document("$literal", month);
+        List<Bson> pipeline;
+        if ("transaction".equals(name)) {
+            pipeline = List.of(match,
+                    Aggregates.unionWith("transaction", List.of(match)),
+                    Aggregates.group(new Document("type", "$type").append("sku", "$sku").append("sport", "$sport"),
+                            Accumulators.sum("total", "$amount"), Accumulators.sum("count", 1),
+                            Accumulators.sum("quantity", "$quantity")),
+                    Aggregates.project(Projections.fields(
+                            Projections.computed("_id", new Document("month", literalMonth).append("type", "$_id.type")
+                                    .append("sku", "$_id.sku").append("sport", "$_id.sport")),
+                            Projections.computed("month", literalMonth),
+                            Projections.include("total", "count", "quantity"))),
+                    Aggregates.merge(TRANSACTION_MONTHLY, new MergeOptions()
+                            .whenMatched(MergeOptions.WhenMatched.REPLACE)
+                            .whenNotMatched(MergeOptions.WhenNotMatched.INSERT)));
+            history.aggregate(pipeline).toCollection();
+        } else {
+            pipeline = List.of(match,
+                    Aggregates.group("$sport", Accumulators.sum("sessions", 1)),
+                    Aggregates.project(Projections.fields(
+                            Projections.computed("_id", new Document("month", literalMonth).append("sport", "$_id")),
+                            Projections.computed("month", literalMonth),
+                            Projections.include("sessions"))),
+                    Aggregates.merge(ATTENDANCE_MONTHLY, new MergeOptions()
+                            .whenMatched(MergeOptions.WhenMatched.REPLACE)
+                            .whenNotMatched(MergeOptions.WhenNotMatched.INSERT)));
+            attendance.aggregate(pipeline).toCollection();
+        }
+    }
+
+    /**
+     * Returns the time of the earliest raw event, or {@code null} if there is none.
+     */
+    private Date earliest(String name) {
+        List<MongoCollection<Document>> sources = "transaction".equals(name) ? List.of(history, transactions) : List.of(attendance);
+        Date earliest = null;
+        for (MongoCollection<Document> source : sources) {
+            Document first = source.find().sort(Sorts.ascending("date")).projection(Projections.include("date")).first();
+            if (first != null && first.getDate("date") != null && (earliest == null || first.getDate("date").before(earliest))) {
+                earliest = first.getDate("date");
+            }
+        }
+        return earliest;
+    }
+
+    private static void addSessions(Document sports, Document row) {
+        String sport = String.valueOf(row.get("_id"));
+        long sessions = row.get("sessions", Number.class).longValue();
+        sports.put(sport, sports.get(sport, 0L) + sessions);
+    }
+
+    /**
+     * Returns the filter for the parts of a range not covered by the given rolled-up months, or {@code null}
+     * if the months cover it all.
+     */
+    private static Bson rawRanges(Date from, Date to, Date[] months) {
+        if (months == null) {
+            return Filters.and(Filters.gte("date", from), Filters.lt("date", to));
+        }
+        List<Bson> ranges = new ArrayList<>();
+        if (from.before(months[0])) {
+            ranges.add(Filters.and(Filters.gte("date", from), Filters.lt("date", months[0])));
+        }
+        if (months[1].before(to)) {
+            ranges.add(Filters.and(Filters.gte("date", months[1]), Filters.lt("date", to)));
+        }
+        return ranges.isEmpty() ? null : ranges.size() == 1 ? ranges.get(0) : Filters.or(ranges);
+    }
+
+    /**
+     * Returns the complete months {@code [start, end)} within a range that are rolled up, or {@code null} if
+     * there are none.
+     *
+     * @param from    The start of the range.
+     * @param to      The end of the range.
+     * @param through The end of the rolled-up months, or {@code null} if nothing is rolled up.
+     */
+    static Date[] fullMonths(Date from, Date to, Date through) {
+        if (through == null) {
+            return null;
+        }
+        Date start = monthStart(from);
+        if (start.before(from)) {
+            start = nextMonth(start);
+        }
+        Date end = monthStart(to);
+        if (through.before(end)) {
+            end = through;
+        }
+        return start.before(end) ? new Date[]{start, end} : null;
+    }
+
+    /**
+     * Turns a transaction into a time-series measurement: its {@code meta} field is the item SKU of a sale or
+     * the member of a fee payment.
+     */
+    static Document measurement(Document transaction) {
+        Object meta = "sale".equals(transaction.getString("type")) ? transaction.get("sku") : transaction.get("member");
+        return new Document(transaction).append("meta", meta);
+    }
+
+    static Date monthStart(Date date) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = date.toInstant().atZone(zone).toLocalDate().withDayOfMonth(1);
+        return Date.from(day.atStartOfDay(zone).toInstant());
+    }
+
+    static Date nextMonth(Date month) {
+        ZoneId zone = ZoneId.systemDefault();
+        return Date.from(month.toInstant().atZone(zone).toLocalDate().plusMonths(1).atStartOfDay(zone).toInstant());
+    }
+
+    static Date previousMonth(Date month) {
+        ZoneId zone = ZoneId.systemDefault();
+        return Date.from(month.toInstant().atZone(zone).toLocalDate().minusMonths(1).atStartOfDay(zone).toInstant());
+    }
+}
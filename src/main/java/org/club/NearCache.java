@@ -0,0 +1,407 @@
+package org.club;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A read-through near-cache for the reference collections that are read at every checkout and registration but
+ * change rarely: the store catalogue ({@code item}), sports ({@code sport}) and fee schedules ({@code fee}).
+ * <p>
+ * Lookups by a key field and full listings are served from memory after the first read.
+ * Returned documents are shared between callers and must not be modified.
+ * The cache holds at most {@code maxEntries} entries and evicts the least recently used one when full.
+ * <p>
+ * Entries are invalidated precisely from a change stream on the cached collections: a change to a document
+ * drops the entries holding that document and the listing of its collection.
+ * Every invalidation is stamped with a sequence number per document (and per listing); a loaded entry is only
+ * stored if none of its documents was invalidated after its read started, so a slow read can never resurrect
+ * stale data, while changes to other documents do not discard it.
+ * <p>
+ * Fields that change with every sale, the {@code stock} and {@code shards} of an item, are not cached, and
+ * updates touching only them are ignored; read live stock from the {@link CheckoutService}.
+ * <p>
+ * If the change stream drops, entries fall back to TTL expiry until it is back, and when it cannot be resumed
+ * the whole cache is cleared.
+ * With strict freshness enabled, the cache is bypassed entirely while the stream is down.
+ * <p>
+ * {@link #stats()} reports the hit ratio, evictions, invalidations, the age of the oldest entry served and the
+ * lag of the change stream.
+ */
+public class NearCache implements AutoCloseable {
+    /**
+     * The reference collections cached by default.
+     */
+    public static final List<String> REFERENCE_COLLECTIONS = List.of("item", "sport", "fee");
+
+    private static final String ALL = "*";
+    private static final long RETRY_MILLIS = 5_000;
+    // Fields left out of the cached documents, whose updates do not invalidate them
+    private static final Map<String, Set<String>> VOLATILE_FIELDS = Map.of("item", Set.of("stock", "shards"));
+
+    // A cached value with the ids of the documents it holds
+    private record Entry(Object value, Set<Object> ids, long loadedAt) {
+    }
+
+    private final MongoDatabase database;
+    private final List<String> collections;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private volatile boolean strictFreshness;
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<Object, Set<String>> keysById = new ConcurrentHashMap<>();
+    // The sequence number of the last invalidation per document and per listing; reference collections are
+    // small, so this stays bounded by their size
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private long clearedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong maxServedAgeMillis = new AtomicLong();
+    private volatile boolean streamHealthy;
+    private volatile long streamLagMillis;
+    private volatile boolean running = true;
+    private final Thread watcher;
+
+    /**
+     * Creates the cache and starts watching the given collections.
+     *
+     * @param database        The club database; must be a replica set or Atlas cluster for invalidation.
+     * @param collections     The collections to cache.
+     * @param maxEntries      The maximum number of cached lookups and listings.
+     * @param ttlMillis       How long an entry may be served while the change stream is down.
+     * @param strictFreshness Whether to bypass the cache entirely while the change stream is down.
+     */
+    public NearCache(MongoDatabase database, List<String> collections, int maxEntries, long ttlMillis, boolean strictFreshness) {
+        this.database = database;
+        this.collections = List.copyOf(collections);
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.strictFreshness = strictFreshness;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > NearCache.this.maxEntries) {
+                    evictions.increment();
+                    unlinkIds(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        watcher = Thread.ofVirtual().name("near-cache").start(this::watch);
+    }
+
+    /**
+     * Switches strict freshness on or off.
+     * When on, nothing is served from the cache while the change stream is down.
+     *
+     * @param strict True to require a healthy change stream for every hit.
+     */
+    public void setStrictFreshness(boolean strict) {
+        this.strictFreshness = strict;
+    }
+
+    /**
+     * Returns the first document of a collection whose field equals the given value.
+     *
+     * @param collection The collection name.
+     * @param field      The key field, for example {@code sku}.
+     * @param value      The key value.
+     * @return The document, or {@code null} if there is none (absence is not cached).
+     */
+    public Document get(String collection, String field, Object value) {
+        String key = collection + "|" + field + "|" + value;
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return (Document) entry.value();
+        }
+        long started = begin(collection);
+        Document document = find(collection, Filters.eq(field, value)).first();
+        if (document != null) {
+            store(collection, key, document, Set.of(document.get("_id")), started);
+        }
+        return document;
+    }
+
+    /**
+     * Returns every document of a collection.
+     *
+     * @param collection The collection name.
+     * @return An unmodifiable list of the documents.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Document> all(String collection) {
+        String key = collection + "|" + ALL;
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return (List<Document>) entry.value();
+        }
+        long started = begin(collection);
+        List<Document> documents = List.copyOf(find(collection, new Document()).into(new ArrayList<>()));
+        // A listing holds no per-document links: any change in the collection drops it
+        store(collection, key, documents, Set.of(), started);
+        return documents;
+    }
+
+    /**
+     * Returns the cache metrics.
+     *
+     * @return A document with {@code hits}, {@code misses}, {@code hitRatio}, {@code size}, {@code evictions},
+     * {@code invalidations}, {@code maxServedAgeMillis}, {@code streamHealthy} and {@code streamLagMillis}.
+     */
+    public Document stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Document("hits", hitCount)
+                .append("misses", missCount)
+                .append("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount))
+                .append("size", size)
+                .append("evictions", evictions.sum())
+                .append("invalidations", invalidations.sum())
+                .append("maxServedAgeMillis", maxServedAgeMillis.get())
+                .append("streamHealthy", streamHealthy)
+                .append("streamLagMillis", streamLagMillis);
+    }
+
+    /**
+     * Stops watching for changes.
+     */
+    @Override
+    public void close() {
+        running = false;
+        watcher.interrupt();
+    }
+
+    /**
+     * Returns a live entry, counting the hit or miss.
+     */
+    private Entry lookup(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        boolean healthy = streamHealthy;
+        if (entry != null && (healthy || (!strictFreshness && now - entry.loadedAt() <= ttlMillis))) {
+            hits.increment();
+            maxServedAgeMillis.accumulateAndGet(now - entry.loadedAt(), Math::max);
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a freshly loaded value unless one of its documents, or for a listing any document of its collection,
+     * was invalidated after the read started.
+     */
+    private void store(String collection, String key, Object value, Set<Object> ids, long started) {
+        if (strictFreshness && !streamHealthy) {
+            return;
+        }
+        Entry entry = new Entry(value, ids, System.currentTimeMillis());
+        synchronized (entries) {
+            if (clearedAt > started) {
+                return;
+            }
+            if (ids.isEmpty() && invalidatedAt.getOrDefault(collection + "|" + ALL, 0L) > started) {
+                return;
+            }
+            for (Object id : ids) {
+                if (invalidatedAt.getOrDefault(collection + "|" + id, 0L) > started) {
+                    return;
+                }
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                unlinkIds(key, previous);
+            }
+            for (Object id : ids) {
+                keysById.computeIfAbsent(collection + "|" + id, k -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+    }
+
+    /**
+     * Drops the entries holding a document and the listing of its collection.
+     */
+    private void invalidate(String collection, Object id) {
+        synchronized (entries) {
+            long invalidation = sequence.incrementAndGet();
+            invalidatedAt.put(collection + "|" + id, invalidation);
+            invalidatedAt.put(collection + "|" + ALL, invalidation);
+            Set<String> keys = keysById.remove(collection + "|" + id);
+            if (keys != null) {
+                keys.forEach(entries::remove);
+            }
+            entries.remove(collection + "|" + ALL);
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * Drops everything, used when changes may have been missed.
+     */
+    private void clear() {
+        synchronized (entries) {
+            clearedAt = sequence.incrementAndGet();
+            invalidatedAt.clear();
+            entries.clear();
+            keysById.clear();
+        }
+    }
+
+    private void unlinkIds(String key, Entry entry) {
+        String collection = key.substring(0, key.indexOf('|'));
+        for (Object id : entry.ids()) {
+            Set<String> keys = keysById.get(collection + "|" + id);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number a load of the collection starts at.
+     */
+    private long begin(String collection) {
+        if (!collections.contains(collection)) {
+            throw new IllegalArgumentException("Collection is not cached: " + collection);
+        }
+        return sequence.get();
+    }
+
+    /**
+     * Reads documents of a collection without its volatile fields.
+     */
+    private FindIterable<Document> find(String collection, Bson filter) {
+        Set<String> excluded = VOLATILE_FIELDS.get(collection);
+        FindIterable<Document> found = database.getCollection(collection).find(filter);
+        return excluded == null ? found : found.projection(Projections.exclude(List.copyOf(excluded)));
+    }
+
+    /**
+     * Watches the cached collections, invalidating on every change, and resumes or clears after errors.
+     */
+    private void watch() {
+        BsonDocument resumeToken = null;
+        while (running) {
+            var stream = database.watch(List.of(Aggregates.match(Filters.in("ns.coll", collections))));
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                if (resumeToken == null) {
+                    // Changes may have been missed while there was no stream
+                    clear();
+                }
+                streamHealthy = true;
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        streamLagMillis = 0;
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    BsonTimestamp clusterTime = change.getClusterTime();
+                    if (clusterTime != null) {
+                        streamLagMillis = Math.max(0, System.currentTimeMillis() - clusterTime.getTime() * 1000L);
+                    }
+                    apply(change);
+                }
+            } catch (MongoException e) {
+                streamHealthy = false;
+                if (!running) {
+                    return;
+                }
+                System.err.println("Near-cache invalidation stream interrupted: " + e.getMessage());
+                if (e.hasErrorLabel("NonResumableChangeStreamError") || e.getCode() == 286) {
+                    resumeToken = null;
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(ChangeStreamDocument<Document> change) {
+        if (change.getNamespace() == null) {
+            return;
+        }
+        String collection = change.getNamespace().getCollectionName();
+        if (!collections.contains(collection)) {
+            return;
+        }
+        OperationType operation = change.getOperationType();
+        if (operation == OperationType.DROP || operation == OperationType.RENAME || change.getDocumentKey() == null) {
+            clear();
+            return;
+        }
+        if (operation == OperationType.UPDATE && onlyVolatile(collection, change.getUpdateDescription())) {
+            return;
+        }
+        invalidate(collection, idValue(change.getDocumentKey().get("_id")));
+    }
+
+    /**
+     * Tells whether an update only changed fields that are not cached, such as the stock taken by a sale.
+     */
+    private static boolean onlyVolatile(String collection, UpdateDescription update) {
+        Set<String> excluded = VOLATILE_FIELDS.get(collection);
+        if (excluded == null || update == null || update.getUpdatedFields() == null
+                || (update.getTruncatedArrays() != null && !update.getTruncatedArrays().isEmpty())) {
+            return false;
+        }
+        List<String> fields = new ArrayList<>(update.getUpdatedFields().keySet());
+        if (update.getRemovedFields() != null) {
+            fields.addAll(update.getRemovedFields());
+        }
+        return !fields.isEmpty() && fields.stream().allMatch(field -> excluded.contains(field.split("\\.", 2)[0]));
+    }
+
+    /**
+     * Converts a change stream document key to the Java value used as {@code _id} in decoded documents.
+     */
+    private static Object idValue(BsonValue id) {
+        return switch (id.getBsonType()) {
+            case OBJECT_ID -> id.asObjectId().getValue();
+            case STRING -> id.asString().getValue();
+            case INT32 -> id.asInt32().getValue();
+            case INT64 -> id.asInt64().getValue();
+            default -> id;
+        };
+    }
+}
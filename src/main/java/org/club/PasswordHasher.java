@@ -0,0 +1,107 @@
+package org.club;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Hashes passwords with salted PBKDF2-HMAC-SHA256 and checks passwords against stored values.
+ * <p>
+ * Hashes are stored as {@code pbkdf2$<iterations>$<salt>$<hash>}, with the salt and hash in Base64, so the
+ * iteration count can be raised later without invalidating existing hashes.
+ * Stored values in any other format are legacy plaintext passwords; they still verify, and
+ * {@link #needsUpgrade(String)} reports them so they can be rehashed at the next successful login.
+ * <p>
+ * Hashing is deliberately slow: run it on a bounded pool, never on the event dispatch thread.
+ */
+public class PasswordHasher {
+    private static final String PREFIX = "pbkdf2";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+
+    /**
+     * Creates a hasher.
+     *
+     * @param iterations The PBKDF2 iteration count of new hashes.
+     */
+    public PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Hashes a password with a fresh salt.
+     *
+     * @param password The password.
+     * @return The encoded hash.
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Checks a password against a stored value, in time independent of where they differ.
+     *
+     * @param password The password.
+     * @param stored   The stored hash, or a legacy plaintext password.
+     * @return Whether the password matches.
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] expected = decoder.decode(parts[3]);
+            return MessageDigest.isEqual(pbkdf2(password, decoder.decode(parts[2]), Integer.parseInt(parts[1])), expected);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Malformed password hash: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether a stored value should be replaced by a new hash after a successful login, because it is
+     * plaintext or was hashed with fewer iterations than this hasher uses.
+     *
+     * @param stored The stored hash or legacy plaintext password.
+     * @return Whether the stored value should be rehashed.
+     */
+    public boolean needsUpgrade(String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.club;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A sorted set that also answers "what position is this element at" and "which element is at this position"
+ * in O(log n), used to rank teams and players without sorting a whole table.
+ * <p>
+ * It is a treap, a binary search tree whose nodes also carry a random priority kept in heap order, which keeps
+ * the tree balanced with high probability.
+ * Every node records the size of its subtree, so positions are found by walking down from the root.
+ * <p>
+ * The comparator must be consistent with equals and must not change its answer for an element while that
+ * element is in the set: to move an element, remove it, then add its new version.
+ * The set is not thread-safe.
+ *
+ * @param <T> The type of the elements.
+ */
+public class RankedSet<T> {
+    private static final class Node<T> {
+        final T value;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node<T> left;
+        Node<T> right;
+        int size = 1;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    /**
+     * Creates an empty set ordered by the given comparator.
+     *
+     * @param comparator The order of the elements, the first element having position 0.
+     */
+    public RankedSet(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Retrieves the number of elements.
+     *
+     * @return The number of elements.
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value The element.
+     * @return Whether the element was added, i.e. whether no equal element was in the set.
+     */
+    public boolean add(T value) {
+        if (rank(value) >= 0) {
+            return false;
+        }
+        Node<T>[] parts = split(root, value);
+        root = merge(merge(parts[0], new Node<>(value)), parts[1]);
+        return true;
+    }
+
+    /**
+     * Removes an element.
+     *
+     * @param value The element.
+     * @return Whether the element was in the set.
+     */
+    public boolean remove(T value) {
+        int before = size();
+        root = remove(root, value);
+        return size() < before;
+    }
+
+    /**
+     * Retrieves the position of an element.
+     *
+     * @param value The element.
+     * @return The zero-based position of the element, or -1 if it is not in the set.
+     */
+    public int rank(T value) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int order = comparator.compare(value, node.value);
+            if (order == 0) {
+                return rank + size(node.left);
+            }
+            if (order < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the element at a position.
+     *
+     * @param index The zero-based position.
+     * @return The element.
+     * @throws IndexOutOfBoundsException If there is no such position.
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int left = size(node.left);
+            if (index == left) {
+                return node.value;
+            }
+            if (index < left) {
+                node = node.left;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the elements at consecutive positions, in order.
+     *
+     * @param from  The zero-based position of the first element.
+     * @param count The maximum number of elements.
+     * @return The elements, fewer than {@code count} at the end of the set.
+     */
+    public List<T> range(int from, int count) {
+        List<T> values = new ArrayList<>(Math.max(0, Math.min(count, size() - from)));
+        collect(root, Math.max(0, from), values, count);
+        return values;
+    }
+
+    private void collect(Node<T> node, int skip, List<T> values, int count) {
+        if (node == null || values.size() >= count) {
+            return;
+        }
+        int left = size(node.left);
+        if (skip < left) {
+            collect(node.left, skip, values, count);
+        }
+        if (skip <= left && values.size() < count) {
+            values.add(node.value);
+        }
+        collect(node.right, Math.max(0, skip - left - 1), values, count);
+    }
+
+    /**
+     * Splits a tree into the elements ordered before the given value and the others.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<T>[] split(Node<T> node, T value) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (comparator.compare(node.value, value) < 0) {
+            Node<T>[] parts = split(node.right, value);
+            node.right = parts[0];
+            update(node);
+            return new Node[]{node, parts[1]};
+        }
+        Node<T>[] parts = split(node.left, value);
+        node.left = parts[1];
+        update(node);
+        return new Node[]{parts[0], node};
+    }
+
+    /**
+     * Joins two trees, every element of the first being ordered before every element of the second.
+     */
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private Node<T> remove(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int order = comparator.compare(value, node.value);
+        if (order == 0) {
+            return merge(node.left, node.right);
+        }
+        if (order < 0) {
+            node.left = remove(node.left, value);
+        } else {
+            node.right = remove(node.right, value);
+        }
+        update(node);
+        return node;
+    }
+
+    private void update(Node<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
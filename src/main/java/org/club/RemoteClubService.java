@@ -0,0 +1,125 @@
+package org.club;
+
+import org.bson.Document;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A {@link ClubService} that forwards every operation to a {@link ClubServer}.
+ * <p>
+ * Terminals using this service hold no database connections or credentials; they share the server's
+ * connection pool and cache instead.
+ * The underlying HTTP client keeps its connections alive between calls.
+ */
+public class RemoteClubService implements ClubService {
+    private final String baseUrl;
+    private final String token;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    /**
+     * Creates a service forwarding to the server at the given URL.
+     *
+     * @param baseUrl The server URL, for example {@code http://frontdesk:8085}.
+     * @param token   The shared secret of the server, sent as a bearer token.
+     */
+    public RemoteClubService(String baseUrl, String token) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.token = token;
+    }
+
+    @Override
+    public boolean authenticate(String username, String password, String collection) {
+        Document body = new Document("username", username).append("password", password).append("collection", collection);
+        return send("POST", "/api/auth", body).getBoolean("authenticated", false);
+    }
+
+    @Override
+    public String login(String username, String password) {
+        Document body = new Document("username", username).append("password", password);
+        return send("POST", "/api/login", body).getString("role");
+    }
+
+    @Override
+    public Document findMember(String username) {
+        return send("GET", "/api/members/" + URLEncoder.encode(username, StandardCharsets.UTF_8), null);
+    }
+
+    @Override
+    public List<Document> listItems() {
+        return send("GET", "/api/items", null).getList("items", Document.class);
+    }
+
+    @Override
+    public List<Document> referenceData(String collection) {
+        Document response = send("GET", "/api/reference/" + URLEncoder.encode(collection, StandardCharsets.UTF_8), null);
+        return response == null ? List.of() : response.getList("documents", Document.class);
+    }
+
+    @Override
+    public String recordSale(String username, String sku, int quantity) {
+        Document body = new Document("username", username).append("sku", sku).append("quantity", quantity);
+        return send("POST", "/api/sales", body).getString("key");
+    }
+
+    @Override
+    public Document salesReport(Date since) {
+        // The exact start, so a report over the last hours is not widened to whole days
+        return send("GET", "/api/reports/sales?since=" + since.getTime(), null);
+    }
+
+    @Override
+    public Document liveMetrics() {
+        return send("GET", "/api/metrics", null);
+    }
+
+    /**
+     * Sends a request and parses the JSON response.
+     *
+     * @return The response document, or {@code null} for a 404.
+     * @throws IllegalArgumentException If the server rejected the request as invalid.
+     * @throws IllegalStateException    If the server is too busy to answer.
+     * @throws RuntimeException         If the server could not be reached or failed.
+     */
+    private Document send(String method, String path, Document body) {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body.toJson(), StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .method(method, publisher)
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() == 404) {
+                return null;
+            }
+            Document document = Document.parse(response.body());
+            if (response.statusCode() == 400) {
+                throw new IllegalArgumentException(document.getString("error"));
+            }
+            if (response.statusCode() == 503) {
+                throw new IllegalStateException(document.getString("error"));
+            }
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Club server error " + response.statusCode() + ": " + document.getString("error"));
+            }
+            return document;
+        } catch (IOException e) {
+            throw new RuntimeException("Club server unreachable: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -9,45 +9,47 @@ import java.awt.*;
  * This class provides static constants representing various images used in the sports club application.
  * These images include the background image, login screen image, user icon, password icon, show and hide
  * icons for password visibility, and icons for forgotten passwords.
- * The paths to these images are specified
- * as constants and loaded as resources within the application.
+ * Each image is loaded at the size the UI draws it at, from the variants pre-scaled at build time by
+ * {@link AssetPipeline}, so the full-size originals are never decoded into the heap.
  * <p>
  * The purpose of this utility class is to centralize the loading of resources, ensuring consistent access
  * to images across different parts of the application.
+ *
+ * @see ImageAssets
  */
 class ResourceLoader {
     /**
-     * The background image for the application.
+     * The background image for the application, with a variant for each window size it fills.
      */
-    public static final Image backgroundImage = new ImageIcon("src/main/resources/images/background.jpg").getImage();
+    public static final Image backgroundImage = ImageAssets.image("background.jpg");
 
     /**
      * The image used for the login screen.
      */
-    public static final ImageIcon loginImage = new ImageIcon("src/main/resources/images/club.png");
+    public static final ImageIcon loginImage = ImageAssets.icon("club.png", 170, 170);
 
     /**
      * The icon representing a user in the application.
      */
-    public static final ImageIcon userIcon = new ImageIcon("src/main/resources/images/user.png");
+    public static final ImageIcon userIcon = ImageAssets.icon("user.png", 60, 60);
 
     /**
      * The icon representing a password in the application.
      */
-    public static ImageIcon passwdIcon = new ImageIcon("src/main/resources/images/password.png");
+    public static ImageIcon passwdIcon = ImageAssets.icon("password.png", 60, 60);
 
     /**
      * The icon representing the option to show a password.
      */
-    public static ImageIcon showIcon = new ImageIcon("src/main/resources/images/show.png");
+    public static ImageIcon showIcon = ImageAssets.icon("show.png", 20, 20);
 
     /**
      * The icon representing the option to hide a password.
      */
-    public static ImageIcon hideIcon = new ImageIcon("src/main/resources/images/hide.png");
+    public static ImageIcon hideIcon = ImageAssets.icon("hide.png", 20, 20);
 
     /**
      * The icon representing a forgotten password.
      */
-    public static ImageIcon forgotIcon = new ImageIcon("src/main/resources/images/forgot.png");
+    public static ImageIcon forgotIcon = ImageAssets.icon("forgot.png", 20, 20);
 }
@@ -2,7 +2,6 @@ package org.club;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 
 /**
  * A custom JPanel class for setting a background image.
@@ -12,8 +11,9 @@ import java.awt.image.BufferedImage;
  * `paintComponent` method to paint the background image, ensuring that the image scales
  * and fits the dimensions of the panel.
  * <p>
- * The background image is retrieved from the {@code ResourceLoader} class, and the paint
- * operation is performed using a `BufferedImage` to achieve proper scaling.
+ * The background image is retrieved from the {@code ResourceLoader} class as a multi-resolution image,
+ * so Java2D draws the variant pre-scaled for the window size (and screen scale) instead of resampling
+ * the full-size original on every repaint.
  */
 public class SetBackgroundImage extends JPanel {
     /**
@@ -22,9 +22,8 @@ public class SetBackgroundImage extends JPanel {
      * @param g The Graphics object used for painting.
      *          <p>
      *          This method first checks if the background image is available from the {@code ResourceLoader}.
-     *          If available, it retrieves the panel dimensions, creates a `BufferedImage` with the panel dimensions,
-     *          obtains a graphics context for the `BufferedImage`, scales and draws the background image to fit
-     *          the panel's dimensions, disposes of the graphics context, and finally draws the buffered image to the panel.
+     *          If available, it draws the background image stretched to the panel's dimensions; the
+     *          resolution variant closest to that size is selected by the graphics pipeline.
      */
     @Override
     protected void paintComponent(Graphics g) {
@@ -32,24 +31,8 @@ public class SetBackgroundImage extends JPanel {
 
         // Check if the background image is available
         if (ResourceLoader.backgroundImage != null) {
-            // Get the panel dimensions
-            int panelWidth = this.getWidth();
-            int panelHeight = this.getHeight();
-
-            // Create a BufferedImage with the panel dimensions
-            BufferedImage bufferedImage = new BufferedImage(panelWidth, panelHeight, BufferedImage.TYPE_INT_ARGB);
-
-            // Get a graphics context for the bufferedImage
-            Graphics2D bufferedGraphics = bufferedImage.createGraphics();
-
-            // Scale and draw the background image to fit the panel's dimensions
-            bufferedGraphics.drawImage(ResourceLoader.backgroundImage, 0, 0, panelWidth, panelHeight, this);
-
-            // Dispose of the graphics context
-            bufferedGraphics.dispose();
-
-            // Draw the buffered image to the panel
-            g.drawImage(bufferedImage, 0, 0, this);
+            // Draw the background image to fit the panel's dimensions
+            g.drawImage(ResourceLoader.backgroundImage, 0, 0, this.getWidth(), this.getHeight(), this);
         }
     }
 }
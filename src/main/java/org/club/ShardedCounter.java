@@ -0,0 +1,254 @@
+package org.club;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the stock of hot store items across several sub-counter documents, so concurrent sales of the same
+ * item do not all write, and conflict on, one document.
+ * <p>
+ * The stock of a sharded item lives in the {@code item_stock} collection as documents
+ * {@code {_id: "<sku>#<n>", sku, shard: n, stock}}.
+ * A sale decrements one shard picked at random, falling back to the other shards when it runs low, and the
+ * stock of the item is the sum of its shards.
+ * Item documents record their number of shards in {@code shards}; their {@code stock} field becomes a copy
+ * that the background rebalancer refreshes, which is good enough for the dashboard but not for a sale.
+ * <p>
+ * Random picks drain the shards unevenly, so a background task periodically moves stock from full shards to
+ * nearly empty ones, inside a transaction so that no concurrent sale is lost.
+ */
+public class ShardedCounter implements AutoCloseable {
+    /**
+     * The collection holding the sub-counters.
+     */
+    public static final String COLLECTION = "item_stock";
+
+    private final MongoCollection<Document> items;
+    private final MongoCollection<Document> shards;
+    private final TransactionRunner transactions;
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rebalancer;
+
+    /**
+     * Creates the counter and starts the background rebalancer.
+     *
+     * @param database        The club database.
+     * @param transactions    Runs the split and rebalance transactions.
+     * @param rebalanceMillis The interval between two rebalancing passes.
+     */
+    public ShardedCounter(MongoDatabase database, TransactionRunner transactions, long rebalanceMillis) {
+        this.items = database.getCollection("item");
+        this.shards = database.getCollection(COLLECTION);
+        this.transactions = transactions;
+        shards.createIndex(Indexes.ascending("sku"));
+        items.find(Filters.exists("shards")).projection(Projections.include("sku", "shards"))
+                .forEach(item -> shardCounts.put(item.getString("sku"), item.getInteger("shards")));
+
+        rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalancer.scheduleWithFixedDelay(this::rebalanceAll, rebalanceMillis, rebalanceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of shards of an item.
+     *
+     * @param sku The item SKU.
+     * @return The number of shards, or 0 if the item is not sharded.
+     */
+    public int shardsOf(String sku) {
+        return shardCounts.getOrDefault(sku, 0);
+    }
+
+    /**
+     * Splits the current stock of an item evenly across the given number of shards.
+     * An item that is already sharded is re-split.
+     *
+     * @param sku   The item SKU.
+     * @param count The number of shards.
+     * @throws IllegalArgumentException If the item does not exist.
+     */
+    public void split(String sku, int count) {
+        transactions.run(session -> {
+            Document item = items.find(session, Filters.eq("sku", sku)).first();
+            if (item == null) {
+                throw new IllegalArgumentException("Unknown item: " + sku);
+            }
+            long total = item.containsKey("shards") ? sum(session, sku) : item.get("stock", Number.class).longValue();
+            shards.deleteMany(session, Filters.eq("sku", sku));
+            List<Document> documents = new ArrayList<>();
+            for (int shard = 0; shard < count; shard++) {
+                documents.add(new Document("_id", shardId(sku, shard)).append("sku", sku).append("shard", shard)
+                        .append("stock", total / count + (shard < total % count ? 1 : 0)));
+            }
+            shards.insertMany(session, documents);
+            items.updateOne(session, Filters.eq("sku", sku), Updates.combine(Updates.set("shards", count),
+                    Updates.set("stock", total)));
+            return null;
+        });
+        shardCounts.put(sku, count);
+    }
+
+    /**
+     * Takes the given quantity from the shards of an item, within the caller's transaction, using the number of
+     * shards the caller read from the item document in that same transaction.
+     * Another process may have split the item since this counter was created, so that number is the one to
+     * trust; it is also remembered for the rebalancer.
+     *
+     * @param session  The session of the running transaction.
+     * @param sku      The item SKU, which must be sharded.
+     * @param quantity The quantity to take.
+     * @param count    The number of shards of the item.
+     * @return False if the item does not have enough stock left.
+     */
+    public boolean decrement(ClientSession session, String sku, int quantity, int count) {
+        shardCounts.put(sku, count);
+        int start = ThreadLocalRandom.current().nextInt(count);
+        for (int i = 0; i < count; i++) {
+            String id = shardId(sku, (start + i) % count);
+            if (shards.updateOne(session, Filters.and(Filters.eq("_id", id), Filters.gte("stock", quantity)),
+                    Updates.inc("stock", -quantity)).getModifiedCount() == 1) {
+                return true;
+            }
+        }
+
+        // No single shard holds enough: take from several, which is still atomic within the transaction
+        List<Document> documents = shards.find(session, Filters.and(Filters.eq("sku", sku), Filters.gt("stock", 0)))
+                .into(new ArrayList<>());
+        long available = documents.stream().mapToLong(document -> document.get("stock", Number.class).longValue()).sum();
+        if (available < quantity) {
+            return false;
+        }
+        long remaining = quantity;
+        for (Document document : documents) {
+            long take = Math.min(remaining, document.get("stock", Number.class).longValue());
+            shards.updateOne(session, Filters.eq("_id", document.get("_id")), Updates.inc("stock", -take));
+            remaining -= take;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes up to the given quantity from the shards of an item, within the caller's transaction, emptying
+     * them if they do not hold enough together.
+     *
+     * @param session  The session of the running transaction.
+     * @param sku      The item SKU, which must be sharded.
+     * @param quantity The quantity to take.
+     * @param count    The number of shards of the item, as read in the same transaction.
+     * @return The quantity actually taken.
+     */
+    public long decrementAvailable(ClientSession session, String sku, int quantity, int count) {
+        if (decrement(session, sku, quantity, count)) {
+            return quantity;
+        }
+        long taken = 0;
+        for (Document document : shards.find(session, Filters.and(Filters.eq("sku", sku), Filters.gt("stock", 0)))
+                .into(new ArrayList<>())) {
+            long stock = document.get("stock", Number.class).longValue();
+            shards.updateOne(session, Filters.eq("_id", document.get("_id")), Updates.inc("stock", -stock));
+            taken += stock;
+        }
+        return taken;
+    }
+
+    /**
+     * Returns the stock of an item, summing its shards if it is sharded.
+     *
+     * @param sku The item SKU.
+     * @return The stock, or 0 if the item does not exist.
+     */
+    public long total(String sku) {
+        if (shardsOf(sku) > 0) {
+            return sum(null, sku);
+        }
+        Document item = items.find(Filters.eq("sku", sku)).projection(Projections.include("stock")).first();
+        return item == null ? 0 : item.get("stock", Number.class).longValue();
+    }
+
+    /**
+     * Evens out the shards of an item if one of them holds less than half its fair share, and refreshes the
+     * stock copy on the item document.
+     *
+     * @param sku The item SKU.
+     * @return True if the shards were rebalanced.
+     */
+    public boolean rebalance(String sku) {
+        return transactions.run(session -> {
+            List<Document> documents = shards.find(session, Filters.eq("sku", sku)).into(new ArrayList<>());
+            if (documents.isEmpty()) {
+                return false;
+            }
+            long total = 0;
+            long lowest = Long.MAX_VALUE;
+            for (Document document : documents) {
+                long stock = document.get("stock", Number.class).longValue();
+                total += stock;
+                lowest = Math.min(lowest, stock);
+            }
+            items.updateOne(session, Filters.and(Filters.eq("sku", sku), Filters.ne("stock", total)),
+                    Updates.set("stock", total));
+            int count = documents.size();
+            if (lowest * 2 * count >= total) {
+                return false;
+            }
+            for (Document document : documents) {
+                int shard = document.getInteger("shard");
+                shards.updateOne(session, Filters.eq("_id", document.get("_id")),
+                        Updates.set("stock", total / count + (shard < total % count ? 1 : 0)));
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Stops the background rebalancer.
+     */
+    @Override
+    public void close() {
+        rebalancer.shutdownNow();
+    }
+
+    private void rebalanceAll() {
+        for (String sku : shardCounts.keySet()) {
+            try {
+                rebalance(sku);
+            } catch (RuntimeException e) {
+                System.err.println("Rebalancing stock of " + sku + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private long sum(ClientSession session, String sku) {
+        var found = session == null ? shards.find(Filters.eq("sku", sku)) : shards.find(session, Filters.eq("sku", sku));
+        long total = 0;
+        for (Document document : found.projection(Projections.include("stock"))) {
+            total += document.get("stock", Number.class).longValue();
+        }
+        return total;
+    }
+
+    static String shardId(String sku, int shard) {
+        return sku + "#" + shard;
+    }
+}
@@ -0,0 +1,489 @@
+package org.club;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command-line tool that exports every collection of the club database to a snapshot directory and restores
+ * it, for backups and for copying the database between environments.
+ * <p>
+ * Export splits each collection into {@code _id} ranges with {@code $bucketAuto} and dumps the ranges in
+ * parallel.
+ * Each range becomes one gzip file of length-prefixed BSON documents, the same layout as {@code mongodump}:
+ * documents are copied as raw bytes and never decoded.
+ * A {@code manifest.json} records the collection options, the indexes, the ranges and the size, document
+ * count and SHA-256 checksum of every file.
+ * The manifest is updated as each range completes, so an export that failed is resumed by running it again
+ * with the same directory: completed ranges are kept and only the others are dumped again.
+ * The snapshot is not point-in-time; documents written during the export may or may not be included.
+ * <p>
+ * Restore verifies every checksum before writing anything, creates the collections with their original
+ * options (validators, time-series settings), loads the ranges in parallel with unordered bulk inserts that
+ * bypass document validation, as mongorestore does, and builds the secondary indexes at the end, which is much
+ * faster than maintaining them during the load.
+ * Documents that already exist are skipped, so an interrupted restore can be run again as well, except into
+ * time-series collections, which do not enforce unique {@code _id}s; drop those first with {@code --drop true}.
+ * <p>
+ * Both directions report their throughput in MB/s of BSON; export warns when it stays below the target.
+ * <p>
+ * Usage: {@code SnapshotTool --mode export|restore --dir DIR [--database NAME] [--collections a,b]
+ * [--partitions N] [--threads N] [--level 1-9] [--target-mbps N] [--batch N] [--drop true|false]}
+ */
+public class SnapshotTool implements AutoCloseable {
+    private static final String MANIFEST = "manifest.json";
+    private static final long MIN_PARTITION_DOCS = 50_000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final MongoDatabase database;
+    private final Path directory;
+    private final ExecutorService pool;
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private Document manifest;
+
+    /**
+     * Creates a tool working on the given database and snapshot directory.
+     *
+     * @param database  The database to export or restore.
+     * @param directory The snapshot directory.
+     * @param threads   The number of ranges dumped or loaded in parallel.
+     */
+    public SnapshotTool(MongoDatabase database, Path directory, int threads) {
+        this.database = database;
+        this.directory = directory;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * The entry point of the tool.
+     *
+     * @param args The command-line options described in the class documentation.
+     * @throws IOException If the snapshot directory cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = DataGenerator.parseOptions(args);
+        String mode = options.get("mode");
+        if (!"export".equals(mode) && !"restore".equals(mode) || !options.containsKey("dir")) {
+            System.err.println("Usage: SnapshotTool --mode export|restore --dir DIR [options]");
+            System.exit(2);
+        }
+        MongoDatabase database = options.containsKey("database")
+                ? Constant.getMongoClient().getDatabase(options.get("database"))
+                : Constant.getDatabase();
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        try (SnapshotTool tool = new SnapshotTool(database, Path.of(options.get("dir")), threads)) {
+            if ("export".equals(mode)) {
+                String collections = options.get("collections");
+                tool.export(collections == null ? List.of() : Arrays.asList(collections.split(",")),
+                        Integer.parseInt(options.getOrDefault("partitions", String.valueOf(threads * 2))),
+                        Integer.parseInt(options.getOrDefault("level", "1")),
+                        Double.parseDouble(options.getOrDefault("target-mbps", "50")));
+            } else {
+                tool.restore(Boolean.parseBoolean(options.getOrDefault("drop", "false")),
+                        Integer.parseInt(options.getOrDefault("batch", "1000")));
+            }
+        }
+    }
+
+    /**
+     * Exports the database into the snapshot directory, resuming an earlier export found there.
+     *
+     * @param collections The collections to export, or an empty list for all of them.
+     * @param partitions  The number of {@code _id} ranges per large collection.
+     * @param level       The gzip compression level; 1 is fastest.
+     * @param targetMbps  The throughput below which a warning is printed.
+     * @throws IOException If the snapshot directory cannot be written.
+     */
+    public void export(List<String> collections, int partitions, int level, double targetMbps) throws IOException {
+        Files.createDirectories(directory);
+        manifest = readManifest();
+        if (manifest != null && database.getName().equals(manifest.getString("database"))) {
+            System.out.println("Resuming export in " + directory);
+        } else {
+            List<Document> planned = new ArrayList<>();
+            for (Document info : database.listCollections()) {
+                String name = info.getString("name");
+                boolean view = "view".equals(info.getString("type"));
+                if (!view && !name.startsWith("system.") && (collections.isEmpty() || collections.contains(name))) {
+                    planned.add(plan(name, info.get("options", new Document()), partitions));
+                }
+            }
+            manifest = new Document("database", database.getName()).append("created", new Date())
+                    .append("collections", planned);
+            writeManifest();
+        }
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (Document collection : manifest.getList("collections", Document.class)) {
+            Files.createDirectories(directory.resolve(collection.getString("name")));
+            for (Document partition : collection.getList("partitions", Document.class)) {
+                if (!isExported(collection, partition)) {
+                    tasks.add(pool.submit(() -> exportPartition(collection, partition, level)));
+                }
+            }
+        }
+        double mbps = run(tasks, "Exported");
+        if (mbps < targetMbps) {
+            System.out.printf("Below the target of %.0f MB/s: raise --threads and --partitions, or lower --level%n", targetMbps);
+        }
+    }
+
+    /**
+     * Restores the snapshot in the directory into the database.
+     *
+     * @param drop      Whether to drop each collection before restoring it.
+     * @param batchSize The number of documents per bulk insert.
+     * @throws IOException If the snapshot cannot be read or a checksum does not match.
+     */
+    public void restore(boolean drop, int batchSize) throws IOException {
+        manifest = readManifest();
+        if (manifest == null) {
+            throw new IOException("No " + MANIFEST + " in " + directory);
+        }
+        List<Document> collections = manifest.getList("collections", Document.class);
+
+        // Verify everything first, so a corrupt snapshot never leaves a half-restored database
+        List<Future<?>> checks = new ArrayList<>();
+        for (Document collection : collections) {
+            for (Document partition : collection.getList("partitions", Document.class)) {
+                if (!partition.getBoolean("complete", false)) {
+                    throw new IOException("Snapshot is incomplete: resume the export first");
+                }
+                checks.add(pool.submit(() -> verify(collection, partition)));
+            }
+        }
+        await(checks);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (Document collection : collections) {
+            prepareCollection(collection, drop);
+            for (Document partition : collection.getList("partitions", Document.class)) {
+                tasks.add(pool.submit(() -> restorePartition(collection, partition, batchSize)));
+            }
+        }
+        run(tasks, "Restored");
+
+        long start = System.nanoTime();
+        for (Document collection : collections) {
+            createIndexes(collection);
+        }
+        System.out.printf("Built indexes in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Shuts down the workers.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Splits a collection into {@code _id} ranges of roughly equal size.
+     * The first and last ranges are open-ended, so documents inserted during the export are not missed.
+     */
+    private Document plan(String name, Document options, int partitions) {
+        MongoCollection<Document> collection = database.getCollection(name);
+        long count = collection.estimatedDocumentCount();
+        int ranges = (int) Math.max(1, Math.min(partitions, count / MIN_PARTITION_DOCS));
+
+        // _id values sort by type first, so equal types at both ends mean every _id has that type
+        BsonDocument first = collection.find(BsonDocument.class).sort(Sorts.ascending("_id"))
+                .projection(Projections.include("_id")).first();
+        BsonDocument last = collection.find(BsonDocument.class).sort(Sorts.descending("_id"))
+                .projection(Projections.include("_id")).first();
+        boolean mixed = first != null && !typeOrder(first.get("_id")).equals(typeOrder(last.get("_id")));
+
+        List<Object> bounds = new ArrayList<>();
+        if (ranges > 1) {
+            collection.aggregate(List.of(Aggregates.project(Projections.include("_id")), Aggregates.bucketAuto("$_id", ranges)))
+                    .allowDiskUse(true)
+                    .forEach(bucket -> bounds.add(bucket.get("_id", Document.class).get("min")));
+            bounds.remove(0);
+        }
+        List<Document> planned = new ArrayList<>();
+        for (int i = 0; i <= bounds.size(); i++) {
+            planned.add(new Document("file", String.format("part-%05d.bson.gz", i))
+                    .append("min", i == 0 ? null : bounds.get(i - 1))
+                    .append("max", i == bounds.size() ? null : bounds.get(i))
+                    .append("complete", false));
+        }
+        List<Document> indexes = new ArrayList<>();
+        for (Document index : collection.listIndexes()) {
+            if (!"_id_".equals(index.getString("name"))) {
+                index.remove("v");
+                index.remove("ns");
+                indexes.add(index);
+            }
+        }
+        return new Document("name", name).append("options", options).append("mixedIds", mixed)
+                .append("indexes", indexes).append("partitions", planned);
+    }
+
+    private boolean isExported(Document collection, Document partition) throws IOException {
+        Path file = fileOf(collection, partition);
+        return partition.getBoolean("complete", false) && Files.exists(file)
+                && Files.size(file) == partition.get("bytes", Number.class).longValue();
+    }
+
+    private Void exportPartition(Document collection, Document partition, int level) throws IOException {
+        Path file = fileOf(collection, partition);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        MessageDigest sha = sha256();
+        long count = 0;
+        long size = 0;
+        Bson filter = range(partition.get("min"), partition.get("max"), collection.getBoolean("mixedIds", false));
+        try (OutputStream out = new BufferedOutputStream(new GZIPOutputStream(
+                new DigestOutputStream(Files.newOutputStream(temporary), sha), BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        }, BUFFER_SIZE);
+             MongoCursor<RawBsonDocument> cursor = database.getCollection(collection.getString("name"), RawBsonDocument.class)
+                     .find(filter).batchSize(2000).cursor()) {
+            while (cursor.hasNext()) {
+                // A BSON document starts with its own length, so the raw bytes are already length-prefixed
+                ByteBuffer buffer = cursor.next().getByteBuffer().asNIO();
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                count++;
+                size += buffer.remaining();
+                documents.increment();
+                bytes.add(buffer.remaining());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            partition.append("count", count).append("bsonBytes", size).append("bytes", Files.size(file))
+                    .append("sha256", HexFormat.of().formatHex(sha.digest())).append("complete", true);
+            writeManifest();
+        }
+        return null;
+    }
+
+    private Void verify(Document collection, Document partition) throws IOException {
+        Path file = fileOf(collection, partition);
+        MessageDigest sha = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), sha)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        if (!HexFormat.of().formatHex(sha.digest()).equals(partition.getString("sha256"))) {
+            throw new IOException("Checksum mismatch in " + file);
+        }
+        return null;
+    }
+
+    private void prepareCollection(Document collection, boolean drop) {
+        String name = collection.getString("name");
+        if (drop) {
+            database.getCollection(name).drop();
+        }
+        Document create = new Document("create", name);
+        create.putAll(collection.get("options", new Document()));
+        try {
+            database.runCommand(create);
+        } catch (MongoException e) {
+            // The collection exists already: restore into it as it is
+            if (e.getCode() != 48) {
+                throw e;
+            }
+        }
+    }
+
+    private Void restorePartition(Document collection, Document partition, int batchSize) throws IOException {
+        MongoCollection<RawBsonDocument> target = database.getCollection(collection.getString("name"), RawBsonDocument.class);
+        List<RawBsonDocument> batch = new ArrayList<>(batchSize);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(fileOf(collection, partition)), BUFFER_SIZE), BUFFER_SIZE))) {
+            byte[] header = new byte[4];
+            while (in.read(header, 0, 1) == 1) {
+                in.readFully(header, 1, 3);
+                int length = (header[0] & 0xff) | (header[1] & 0xff) << 8 | (header[2] & 0xff) << 16 | (header[3] & 0xff) << 24;
+                byte[] document = new byte[length];
+                System.arraycopy(header, 0, document, 0, 4);
+                in.readFully(document, 4, length - 4);
+                batch.add(new RawBsonDocument(document));
+                bytes.add(length);
+                if (batch.size() == batchSize) {
+                    insert(target, batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(target, batch);
+        }
+        return null;
+    }
+
+    private void insert(MongoCollection<RawBsonDocument> target, List<RawBsonDocument> batch) {
+        try {
+            // Like mongorestore: documents older than the collection's validator are restored as they were saved
+            target.insertMany(batch, new InsertManyOptions().ordered(false).bypassDocumentValidation(true));
+        } catch (MongoBulkWriteException e) {
+            // Documents restored by an earlier, interrupted run are duplicates and can be skipped
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCode() != 11000) {
+                    throw e;
+                }
+            }
+        }
+        documents.add(batch.size());
+    }
+
+    private void createIndexes(Document collection) {
+        List<Document> indexes = collection.getList("indexes", Document.class);
+        if (!indexes.isEmpty()) {
+            database.runCommand(new Document("createIndexes", collection.getString("name")).append("indexes", indexes));
+        }
+    }
+
+    /**
+     * Runs the tasks, printing progress every five seconds and the throughput at the end.
+     *
+     * @return The throughput in MB/s of BSON.
+     */
+    private double run(List<Future<?>> tasks, String verb) throws IOException {
+        long start = System.nanoTime();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> System.out.printf("%s %,d docs, %,.1f MB (%.1f MB/s)%n", verb,
+                documents.sum(), bytes.sum() / 1e6, bytes.sum() / 1e6 / ((System.nanoTime() - start) / 1e9)), 5, 5, TimeUnit.SECONDS);
+        try {
+            await(tasks);
+        } finally {
+            progress.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double mbps = bytes.sum() / 1e6 / seconds;
+        System.out.printf("%s %,d docs, %,.1f MB in %.1f s (%.1f MB/s)%n", verb, documents.sum(), bytes.sum() / 1e6, seconds, mbps);
+        return mbps;
+    }
+
+    /**
+     * Waits for every task, then reports the failures together.
+     */
+    private static void await(List<Future<?>> tasks) throws IOException {
+        List<String> failures = new ArrayList<>();
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                failures.add(e.getCause().toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(System.err::println);
+            throw new IOException(failures.size() + " of " + tasks.size() + " ranges failed; run again to resume");
+        }
+    }
+
+    /**
+     * Returns the filter for an {@code _id} range, {@code null} bounds being open.
+     * Query operators only compare values of the same type, so collections mixing {@code _id} types compare
+     * with {@code $expr}, which follows the BSON sort order across types.
+     */
+    private static Bson range(Object min, Object max, boolean mixed) {
+        List<Bson> bounds = new ArrayList<>();
+        if (mixed) {
+            if (min != null) {
+                bounds.add(Filters.expr(new Document("$gte", List.of("$_id", min))));
+            }
+            if (max != null) {
+                bounds.add(Filters.expr(new Document("$lt", List.of("$_id", max))));
+            }
+        } else {
+            if (min != null) {
+                bounds.add(Filters.gte("_id", min));
+            }
+            if (max != null) {
+                bounds.add(Filters.lt("_id", max));
+            }
+        }
+        return bounds.isEmpty() ? new Document() : Filters.and(bounds);
+    }
+
+    /**
+     * Returns the sort class of an {@code _id}: the BSON numeric types compare with each other in queries, so
+     * they share one.
+     */
+    private static String typeOrder(BsonValue id) {
+        return id.isNumber() || id.isDecimal128() ? "number" : id.getBsonType().name();
+    }
+
+    private Path fileOf(Document collection, Document partition) {
+        return directory.resolve(collection.getString("name")).resolve(partition.getString("file"));
+    }
+
+    private Document readManifest() throws IOException {
+        Path path = directory.resolve(MANIFEST);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return Document.parse(Files.readString(path, StandardCharsets.UTF_8));
+    }
+
+    private void writeManifest() throws IOException {
+        // Write to a temporary file and atomically rename so a crash never leaves a half-written manifest
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        Files.writeString(temporary, manifest.toJson(JsonWriterSettings.builder().indent(true).build()), StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package org.club;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the league table and the top-scorer table of every competition up to date as game results are added,
+ * edited and removed, so showing standings never goes over the season's results.
+ * <p>
+ * Games are stored in the {@code game} collection as
+ * {@code {competition, date, home, away, homeScore, awayScore, scorers: [{player, team, goals}]}}.
+ * Each change adds or subtracts that one game from the aggregates of the teams and players involved, which
+ * are kept per competition in {@link RankedSet}s, so the position of any team or player is found in O(log n).
+ * <p>
+ * The aggregates are also kept in the {@code standings} collection, one document per competition, so several
+ * terminals can record games at the same time: every game change is written in one transaction with
+ * {@code $inc} deltas to the competition's document and a bump of its {@code version}, so no terminal overwrites
+ * another's results. Each terminal follows the {@code standings} collection on a change stream and replaces its
+ * in-memory standings whenever another terminal saved a newer version; its own changes are applied in memory
+ * directly. A competition with games but no standings document is rebuilt once from its games.
+ * <p>
+ * Change streams and transactions need a replica set or an Atlas cluster.
+ */
+public class StandingsEngine implements AutoCloseable {
+    /**
+     * The collection holding the games.
+     */
+    public static final String GAMES = "game";
+
+    /**
+     * The collection holding the saved standings.
+     */
+    public static final String STANDINGS = "standings";
+
+    /**
+     * The points for a win.
+     */
+    public static final int WIN_POINTS = 3;
+
+    /**
+     * The points for a draw.
+     */
+    public static final int DRAW_POINTS = 1;
+
+    /**
+     * The record of a team in one competition.
+     *
+     * @param team         The team name.
+     * @param played       The number of games played.
+     * @param won          The number of games won.
+     * @param drawn        The number of games drawn.
+     * @param lost         The number of games lost.
+     * @param goalsFor     The number of goals scored.
+     * @param goalsAgainst The number of goals conceded.
+     */
+    public record TeamRow(String team, int played, int won, int drawn, int lost, int goalsFor, int goalsAgainst) {
+        /**
+         * Ranks teams by points, then goal difference, then goals scored, then name.
+         */
+        public static final Comparator<TeamRow> ORDER = Comparator.comparingInt(TeamRow::points).reversed()
+                .thenComparing(Comparator.comparingInt(TeamRow::goalDifference).reversed())
+                .thenComparing(Comparator.comparingInt(TeamRow::goalsFor).reversed())
+                .thenComparing(TeamRow::team);
+
+        /**
+         * Retrieves the points of the team.
+         *
+         * @return The points.
+         */
+        public int points() {
+            return won * WIN_POINTS + drawn * DRAW_POINTS;
+        }
+
+        /**
+         * Retrieves the goal difference of the team.
+         *
+         * @return The goals scored minus the goals conceded.
+         */
+        public int goalDifference() {
+            return goalsFor - goalsAgainst;
+        }
+
+        private TeamRow plus(int sign, int scored, int conceded) {
+            return new TeamRow(team, played + sign,
+                    won + (scored > conceded ? sign : 0),
+                    drawn + (scored == conceded ? sign : 0),
+                    lost + (scored < conceded ? sign : 0),
+                    goalsFor + sign * scored, goalsAgainst + sign * conceded);
+        }
+
+        private String key() {
+            return fieldName(team);
+        }
+
+        private Document toDocument() {
+            return new Document("team", team).append("played", played).append("won", won).append("drawn", drawn)
+                    .append("lost", lost).append("goalsFor", goalsFor).append("goalsAgainst", goalsAgainst);
+        }
+
+        private static TeamRow fromDocument(Document document) {
+            return new TeamRow(document.getString("team"), document.getInteger("played"), document.getInteger("won"),
+                    document.getInteger("drawn"), document.getInteger("lost"), document.getInteger("goalsFor"),
+                    document.getInteger("goalsAgainst"));
+        }
+    }
+
+    /**
+     * The record of a player for one team in one competition.
+     *
+     * @param player The player name.
+     * @param team   The team the goals were scored for.
+     * @param goals  The number of goals scored.
+     * @param games  The number of games with at least one goal.
+     */
+    public record PlayerRow(String player, String team, int goals, int games) {
+        /**
+         * Ranks players by goals, then fewer games, then name and team.
+         */
+        public static final Comparator<PlayerRow> ORDER = Comparator.comparingInt(PlayerRow::goals).reversed()
+                .thenComparingInt(PlayerRow::games)
+                .thenComparing(PlayerRow::player)
+                .thenComparing(PlayerRow::team);
+
+        private String key() {
+            return fieldName(player) + '@' + fieldName(team);
+        }
+
+        private Document toDocument() {
+            return new Document("player", player).append("team", team).append("goals", goals).append("games", games);
+        }
+
+        private static PlayerRow fromDocument(Document document) {
+            return new PlayerRow(document.getString("player"), document.getString("team"),
+                    document.getInteger("goals"), document.getInteger("games"));
+        }
+    }
+
+    /**
+     * The aggregates of one competition.
+     * Not thread-safe; the engine guards it.
+     */
+    public static class Standings {
+        private final Map<String, TeamRow> teams = new HashMap<>();
+        private final Map<String, PlayerRow> players = new HashMap<>();
+        private final RankedSet<TeamRow> table = new RankedSet<>(TeamRow.ORDER);
+        private final RankedSet<PlayerRow> scorers = new RankedSet<>(PlayerRow.ORDER);
+        private int games;
+        private long version;
+
+        /**
+         * Adds a game to the aggregates, or subtracts it.
+         *
+         * @param game The game.
+         * @param sign 1 to add the game, -1 to subtract it.
+         */
+        public void apply(Document game, int sign) {
+            int homeScore = game.getInteger("homeScore");
+            int awayScore = game.getInteger("awayScore");
+            updateTeam(game.getString("home"), sign, homeScore, awayScore);
+            updateTeam(game.getString("away"), sign, awayScore, homeScore);
+            for (PlayerRow scorer : scorers(game).values()) {
+                updatePlayer(scorer.player(), scorer.team(), sign, scorer.goals());
+            }
+            games += sign;
+        }
+
+        private void updateTeam(String team, int sign, int scored, int conceded) {
+            TeamRow current = teams.get(team);
+            if (current == null) {
+                current = new TeamRow(team, 0, 0, 0, 0, 0, 0);
+            } else {
+                table.remove(current);
+            }
+            TeamRow updated = current.plus(sign, scored, conceded);
+            if (updated.played() > 0) {
+                teams.put(team, updated);
+                table.add(updated);
+            } else {
+                teams.remove(team);
+            }
+        }
+
+        private void updatePlayer(String player, String team, int sign, int goals) {
+            if (goals <= 0) {
+                return;
+            }
+            PlayerRow current = players.get(new PlayerRow(player, team, 0, 0).key());
+            if (current == null) {
+                current = new PlayerRow(player, team, 0, 0);
+            } else {
+                scorers.remove(current);
+            }
+            PlayerRow updated = new PlayerRow(player, team, current.goals() + sign * goals, current.games() + sign);
+            if (updated.games() > 0) {
+                players.put(updated.key(), updated);
+                scorers.add(updated);
+            } else {
+                players.remove(updated.key());
+            }
+        }
+
+        /**
+         * Retrieves the number of games in the competition.
+         *
+         * @return The number of games.
+         */
+        public int games() {
+            return games;
+        }
+
+        /**
+         * Retrieves the league table.
+         *
+         * @return The team records, best first.
+         */
+        public List<TeamRow> table() {
+            return table.range(0, table.size());
+        }
+
+        /**
+         * Retrieves the top of the scorer table.
+         *
+         * @param limit The maximum number of players.
+         * @return The player records, best first.
+         */
+        public List<PlayerRow> topScorers(int limit) {
+            return scorers.range(0, limit);
+        }
+
+        /**
+         * Retrieves the position of a team in the league table.
+         *
+         * @param team The team name.
+         * @return The one-based position, or 0 if the team has not played.
+         */
+        public int teamPosition(String team) {
+            TeamRow row = teams.get(team);
+            return row == null ? 0 : table.rank(row) + 1;
+        }
+
+        /**
+         * Retrieves the position of a player in the scorer table.
+         *
+         * @param player The player name.
+         * @param team   The team the goals were scored for.
+         * @return The one-based position, or 0 if the player has not scored.
+         */
+        public int playerPosition(String player, String team) {
+            PlayerRow row = players.get(new PlayerRow(player, team, 0, 0).key());
+            return row == null ? 0 : scorers.rank(row) + 1;
+        }
+
+        private Document toDocument() {
+            Document teamRows = new Document();
+            teams.values().forEach(row -> teamRows.append(row.key(), row.toDocument()));
+            Document playerRows = new Document();
+            players.values().forEach(row -> playerRows.append(row.key(), row.toDocument()));
+            return new Document("games", games).append("version", version)
+                    .append("teams", teamRows).append("players", playerRows);
+        }
+
+        /**
+         * Reads saved standings. Rows brought back to zero by {@code $inc} deltas are skipped.
+         */
+        private static Standings fromDocument(Document document) {
+            Standings standings = new Standings();
+            standings.games = document.getInteger("games", 0);
+            standings.version = document.get("version", Number.class).longValue();
+            for (Object team : document.get("teams", new Document()).values()) {
+                TeamRow row = TeamRow.fromDocument((Document) team);
+                if (row.played() > 0) {
+                    standings.teams.put(row.team(), row);
+                    standings.table.add(row);
+                }
+            }
+            for (Object player : document.get("players", new Document()).values()) {
+                PlayerRow row = PlayerRow.fromDocument((Document) player);
+                if (row.games() > 0) {
+                    standings.players.put(row.key(), row);
+                    standings.scorers.add(row);
+                }
+            }
+            return standings;
+        }
+    }
+
+    /**
+     * A game added to (sign 1) or subtracted from (sign -1) the standings, with the standings document as saved.
+     */
+    private record Change(Document game, int sign, Document saved) {
+    }
+
+    private static final long RETRY_MILLIS = 5_000;
+
+    private final MongoCollection<Document> gameCollection;
+    private final MongoCollection<Document> standingsCollection;
+    private final TransactionRunner transactions;
+    private final Map<String, Standings> competitions = new HashMap<>();
+    private volatile boolean running = true;
+    private final Thread watcher;
+
+    /**
+     * Loads the saved standings, rebuilds the missing ones and starts following other terminals' changes.
+     *
+     * @param database     The club database.
+     * @param transactions The runner of the transactions recording games.
+     */
+    public StandingsEngine(MongoDatabase database, TransactionRunner transactions) {
+        this.gameCollection = database.getCollection(GAMES);
+        this.standingsCollection = database.getCollection(STANDINGS);
+        this.transactions = transactions;
+        load();
+        watcher = Thread.ofVirtual().name("standings-watcher").start(this::watch);
+    }
+
+    /**
+     * Reads every saved standings document, rebuilding those of competitions that have none.
+     */
+    private void load() {
+        Map<String, Document> saved = new HashMap<>();
+        standingsCollection.find().forEach(document -> saved.put(document.getString("_id"), document));
+        for (String competition : gameCollection.distinct("competition", String.class)) {
+            Document document = saved.get(competition);
+            if (document == null || !document.containsKey("version")) {
+                saved.put(competition, rebuild(competition));
+            }
+        }
+        saved.values().forEach(this::refresh);
+    }
+
+    /**
+     * Aggregates the games of a competition into a new standings document, unless another terminal just did.
+     */
+    private Document rebuild(String competition) {
+        return transactions.run(session -> {
+            Document current = standingsCollection.find(session, Filters.eq("_id", competition)).first();
+            if (current != null && current.containsKey("version")) {
+                return current;
+            }
+            Standings standings = new Standings();
+            gameCollection.find(session, Filters.eq("competition", competition))
+                    .forEach(game -> standings.apply(game, 1));
+            standings.version = 1;
+            Document document = standings.toDocument().append("_id", competition);
+            standingsCollection.replaceOne(session, Filters.eq("_id", competition), document,
+                    new ReplaceOptions().upsert(true));
+            return document;
+        });
+    }
+
+    /**
+     * Follows the saved standings and picks up every newer version, reloading them all after an interruption.
+     */
+    private void watch() {
+        while (running) {
+            var stream = standingsCollection.watch().fullDocument(FullDocument.UPDATE_LOOKUP);
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                // Opened before reloading, so no version saved in between is missed
+                standingsCollection.find().forEach(this::refresh);
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null && change.getFullDocument() != null) {
+                        refresh(change.getFullDocument());
+                    }
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    return;
+                }
+                System.err.println("Standings stream interrupted: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the standings of a competition with a saved version newer than the one in memory.
+     */
+    private synchronized void refresh(Document saved) {
+        if (!(saved.get("version") instanceof Number version)) {
+            return;
+        }
+        Standings current = competitions.get(saved.getString("_id"));
+        if (current == null || current.version < version.longValue()) {
+            competitions.put(saved.getString("_id"), Standings.fromDocument(saved));
+        }
+    }
+
+    /**
+     * Records a game.
+     *
+     * @param game The game, without {@code _id}.
+     * @return The id of the stored game.
+     * @throws IllegalArgumentException If the game is incomplete or inconsistent.
+     */
+    public ObjectId addGame(Document game) {
+        validate(game);
+        ObjectId id = new ObjectId();
+        Document stored = new Document("_id", id);
+        stored.putAll(game);
+        apply(transactions.run(session -> {
+            gameCollection.insertOne(session, stored);
+            return List.of(save(session, stored, 1));
+        }));
+        return id;
+    }
+
+    /**
+     * Replaces a recorded game.
+     *
+     * @param id   The id of the game.
+     * @param game The new version of the game, without {@code _id}.
+     * @throws IllegalArgumentException If there is no such game, or the new version is incomplete or inconsistent.
+     */
+    public void editGame(ObjectId id, Document game) {
+        validate(game);
+        Document stored = new Document(game).append("_id", id);
+        apply(transactions.run(session -> {
+            Document previous = gameCollection.find(session, Filters.eq("_id", id)).first();
+            if (previous == null) {
+                throw new IllegalArgumentException("Unknown game " + id);
+            }
+            gameCollection.replaceOne(session, Filters.eq("_id", id), stored);
+            return List.of(save(session, previous, -1), save(session, stored, 1));
+        }));
+    }
+
+    /**
+     * Removes a recorded game.
+     *
+     * @param id The id of the game.
+     * @return Whether the game existed.
+     */
+    public boolean removeGame(ObjectId id) {
+        List<Change> changes = transactions.run(session -> {
+            Document previous = gameCollection.findOneAndDelete(session, Filters.eq("_id", id));
+            return previous == null ? List.<Change>of() : List.of(save(session, previous, -1));
+        });
+        apply(changes);
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Adds a game to the saved standings of its competition, or subtracts it, and bumps their version.
+     */
+    private Change save(ClientSession session, Document game, int sign) {
+        Document saved = standingsCollection.findOneAndUpdate(session,
+                Filters.eq("_id", game.getString("competition")), delta(game, sign),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return new Change(game, sign, saved);
+    }
+
+    /**
+     * Applies committed changes in memory: directly when the saved version follows the one in memory, and by
+     * reloading the saved standings when another terminal's change came in between.
+     */
+    private synchronized void apply(List<Change> changes) {
+        for (Change change : changes) {
+            String competition = change.game().getString("competition");
+            long version = change.saved().get("version", Number.class).longValue();
+            Standings standings = competitions.get(competition);
+            if (standings != null && standings.version == version - 1) {
+                standings.apply(change.game(), change.sign());
+                standings.version = version;
+            } else if (standings == null || standings.version < version) {
+                competitions.put(competition, Standings.fromDocument(change.saved()));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the latest games of a competition, for picking one to edit or remove.
+     *
+     * @param competition The competition.
+     * @param limit       The maximum number of games.
+     * @return The games, latest first.
+     */
+    public List<Document> games(String competition, int limit) {
+        return gameCollection.find(Filters.eq("competition", competition)).sort(Sorts.descending("date"))
+                .limit(limit).into(new ArrayList<>());
+    }
+
+    /**
+     * Retrieves the names of the competitions with at least one game.
+     *
+     * @return The competition names, in alphabetical order.
+     */
+    public synchronized Set<String> competitions() {
+        Set<String> names = new TreeSet<>();
+        competitions.forEach((name, standings) -> {
+            if (standings.games() > 0) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * Retrieves the league table of a competition.
+     *
+     * @param competition The competition.
+     * @return The team records, best first.
+     */
+    public synchronized List<TeamRow> table(String competition) {
+        return standings(competition).table();
+    }
+
+    /**
+     * Retrieves the top of the scorer table of a competition.
+     *
+     * @param competition The competition.
+     * @param limit       The maximum number of players.
+     * @return The player records, best first.
+     */
+    public synchronized List<PlayerRow> topScorers(String competition, int limit) {
+        return standings(competition).topScorers(limit);
+    }
+
+    /**
+     * Retrieves the position of a team in the league table of a competition.
+     *
+     * @param competition The competition.
+     * @param team        The team name.
+     * @return The one-based position, or 0 if the team has not played.
+     */
+    public synchronized int teamPosition(String competition, String team) {
+        return standings(competition).teamPosition(team);
+    }
+
+    /**
+     * Stops following other terminals' changes.
+     */
+    @Override
+    public void close() {
+        running = false;
+        watcher.interrupt();
+    }
+
+    private Standings standings(String competition) {
+        return competitions.getOrDefault(competition, new Standings());
+    }
+
+    /**
+     * Builds the {@code $inc} deltas of a game on a standings document.
+     */
+    private static Bson delta(Document game, int sign) {
+        int homeScore = game.getInteger("homeScore");
+        int awayScore = game.getInteger("awayScore");
+        List<Bson> updates = new ArrayList<>();
+        teamDelta(updates, game.getString("home"), sign, homeScore, awayScore);
+        teamDelta(updates, game.getString("away"), sign, awayScore, homeScore);
+        for (PlayerRow scorer : scorers(game).values()) {
+            String path = "players." + scorer.key() + ".";
+            updates.add(Updates.set(path + "player", scorer.player()));
+            updates.add(Updates.set(path + "team", scorer.team()));
+            updates.add(Updates.inc(path + "goals", sign * scorer.goals()));
+            updates.add(Updates.inc(path + "games", sign));
+        }
+        updates.add(Updates.inc("games", sign));
+        updates.add(Updates.inc("version", 1L));
+        return Updates.combine(updates);
+    }
+
+    private static void teamDelta(List<Bson> updates, String team, int sign, int scored, int conceded) {
+        String path = "teams." + fieldName(team) + ".";
+        updates.add(Updates.set(path + "team", team));
+        updates.add(Updates.inc(path + "played", sign));
+        updates.add(Updates.inc(path + "won", scored > conceded ? sign : 0));
+        updates.add(Updates.inc(path + "drawn", scored == conceded ? sign : 0));
+        updates.add(Updates.inc(path + "lost", scored < conceded ? sign : 0));
+        updates.add(Updates.inc(path + "goalsFor", sign * scored));
+        updates.add(Updates.inc(path + "goalsAgainst", sign * conceded));
+    }
+
+    /**
+     * Collects the scorers of a game by player and team, adding up the goals of a player listed twice.
+     */
+    private static Map<String, PlayerRow> scorers(Document game) {
+        Map<String, PlayerRow> scorers = new LinkedHashMap<>();
+        for (Document scorer : game.getList("scorers", Document.class, List.of())) {
+            int goals = scorer.getInteger("goals", 0);
+            if (goals > 0) {
+                PlayerRow row = new PlayerRow(scorer.getString("player"), scorer.getString("team"), goals, 1);
+                scorers.merge(row.key(), row, (a, b) -> new PlayerRow(a.player(), a.team(), a.goals() + b.goals(), 1));
+            }
+        }
+        return scorers;
+    }
+
+    /**
+     * Escapes a name for use as a field name in an update path, where dots and dollar signs have a meaning.
+     */
+    private static String fieldName(String name) {
+        return name.replace("%", "%25").replace(".", "%2E").replace("$", "%24").replace("@", "%40");
+    }
+
+    private static void validate(Document game) {
+        for (String field : List.of("competition", "home", "away")) {
+            if (!(game.get(field) instanceof String value) || value.isBlank()) {
+                throw new IllegalArgumentException("The game needs a " + field);
+            }
+        }
+        if (!(game.get("date") instanceof Date)) {
+            throw new IllegalArgumentException("The game needs a date");
+        }
+        if (game.getString("home").equals(game.getString("away"))) {
+            throw new IllegalArgumentException("A team cannot play itself");
+        }
+        for (String field : List.of("homeScore", "awayScore")) {
+            if (!(game.get(field) instanceof Integer score) || score < 0) {
+                throw new IllegalArgumentException("The game needs a non-negative " + field);
+            }
+        }
+        Map<String, Integer> goals = new HashMap<>();
+        for (Document scorer : game.getList("scorers", Document.class, List.of())) {
+            if (!(scorer.get("player") instanceof String player) || player.isBlank()) {
+                throw new IllegalArgumentException("Every scorer needs a player");
+            }
+            String team = scorer.getString("team");
+            if (!game.getString("home").equals(team) && !game.getString("away").equals(team)) {
+                throw new IllegalArgumentException("Scorer " + scorer.getString("player") + " is not on either team");
+            }
+            goals.merge(team, scorer.getInteger("goals", 0), Integer::sum);
+        }
+        if (goals.getOrDefault(game.getString("home"), 0) > game.getInteger("homeScore")
+                || goals.getOrDefault(game.getString("away"), 0) > game.getInteger("awayScore")) {
+            throw new IllegalArgumentException("The scorers have more goals than the score");
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package org.club;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.RawBsonDocument;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A durable, append-only journal for store sales and fee payments taken at the counter.
+ * <p>
+ * Every transaction is first written to a local segment file and forced to disk before the caller is told
+ * that it succeeded, so the cashier's confirmation only waits for the local disk and never for the network.
+ * Many concurrent appends are group-committed: the writer thread drains everything that is queued, writes it
+ * with a single channel write and issues one {@code fsync} for the whole group.
+ * <p>
+ * A background shipper sends the durable entries to MongoDB in batches.
+ * Each entry carries an idempotency key which becomes the {@code _id} of the stored document and is written
+ * with an upsert, so an entry that is shipped twice (for example after a crash between the write and the
+ * acknowledgement) still results in exactly one document.
+ * After a batch is acknowledged the shipped position is recorded in a checkpoint file and fully shipped
+ * segments are deleted.
+ * On restart, every entry after the checkpoint is replayed.
+ * <p>
+ * A failed batch is retried with an exponential backoff and a halved batch size, which narrows a failure down
+ * to the entry causing it.
+ * An entry that keeps failing on its own for a reason other than the database being unreachable is parked:
+ * it is appended to {@code journal.parked} for an operator to inspect, and shipping carries on past it.
+ * <p>
+ * Record layout inside a segment: {@code [int payloadLength][int crc32c][payload]}, where the payload is the
+ * BSON encoding of {@code {k: key, c: collection, d: document}}.
+ * A record with a bad length or checksum marks a torn write; the segment is truncated at that point.
+ */
+public class TransactionJournal implements AutoCloseable {
+    /**
+     * Destination for shipped journal entries.
+     */
+    public interface Sink {
+        /**
+         * Ships a batch of entries.
+         * The batch is only considered acknowledged when this method returns normally.
+         *
+         * @param batch The entries to ship, in journal order.
+         * @throws Exception If the batch could not be shipped; it will be retried later.
+         */
+        void ship(List<Entry> batch) throws Exception;
+    }
+
+    /**
+     * A single journaled transaction.
+     *
+     * @param key        The idempotency key, used as the {@code _id} of the shipped document.
+     * @param collection The collection the transaction belongs to.
+     * @param document   The transaction document.
+     */
+    public record Entry(String key, String collection, Document document) {
+    }
+
+    // A durable entry together with the position just past its record
+    private record Located(Entry entry, long segment, long endOffset) {
+    }
+
+    // An append waiting for the next group commit
+    private record Pending(Entry entry, CompletableFuture<String> done) {
+    }
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_GROUP = 1024;
+    private static final int SHIP_BATCH = 500;
+    private static final long SHIP_INTERVAL_MS = 200;
+    private static final long MAX_SHIP_BACKOFF_MS = 60_000;
+    private static final int MAX_ENTRY_ATTEMPTS = 5;
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    private static final Pending CLOSE_MARKER = new Pending(null, null);
+
+    private final Path directory;
+    private final Sink sink;
+    private final BlockingQueue<Pending> appendQueue = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedDeque<Located> unshipped = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService shipper;
+    private final Thread writer;
+
+    private FileChannel channel;
+    private long segment;
+    private long position;
+    private volatile boolean closed;
+
+    // Shipping state, only touched by the shipper (and by close() once the shipper has stopped)
+    private int shipBatch = SHIP_BATCH;
+    private int shipFailures;
+    private int entryFailures;
+    private long nextShipMillis;
+
+    private TransactionJournal(Path directory, Sink sink) throws IOException {
+        this.directory = directory;
+        this.sink = sink;
+        Files.createDirectories(directory);
+
+        // Replay everything after the last acknowledged position, then reopen the tail segment for appends
+        recover();
+
+        writer = Thread.ofPlatform().name("journal-writer").daemon().start(this::writeLoop);
+        shipper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-shipper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        shipper.scheduleWithFixedDelay(() -> {
+            if (System.currentTimeMillis() >= nextShipMillis) {
+                shipPending();
+            }
+        }, 0, SHIP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens (or creates) a journal in the given directory and starts shipping to the given sink.
+     *
+     * @param directory The directory holding the segment files and the checkpoint.
+     * @param sink      The destination for shipped entries.
+     * @return The opened journal, with any unacknowledged entries already queued for replay.
+     * @throws RuntimeException If the journal directory cannot be read or written.
+     */
+    public static TransactionJournal open(Path directory, Sink sink) {
+        try {
+            return new TransactionJournal(directory, sink);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a sink that upserts entries into their collections in the given database.
+     * <p>
+     * Entries are grouped by collection and written with one unordered bulk write per collection.
+     * Using the idempotency key as {@code _id} together with an upsert makes a replayed entry a no-op.
+     *
+     * @param database The database to ship to.
+     * @return A sink writing to MongoDB.
+     */
+    public static Sink mongoSink(MongoDatabase database) {
+        return batch -> {
+            Map<String, List<WriteModel<Document>>> byCollection = new LinkedHashMap<>();
+            for (Entry entry : batch) {
+                Document document = new Document(entry.document()).append("_id", entry.key());
+                byCollection.computeIfAbsent(entry.collection(), name -> new ArrayList<>())
+                        .add(new ReplaceOneModel<>(Filters.eq("_id", entry.key()), document, new ReplaceOptions().upsert(true)));
+            }
+            byCollection.forEach((name, writes) ->
+                    database.getCollection(name).bulkWrite(writes, new BulkWriteOptions().ordered(false)));
+        };
+    }
+
+    /**
+     * Creates a sink that applies store sales through a {@link CheckoutService} and upserts every other entry
+     * like {@link #mongoSink(MongoDatabase)}.
+     * <p>
+     * Applying a sale decrements the item's stock (or its sub-counters), stores the sale and charges the
+     * member's ledger in one transaction, keyed by the entry's idempotency key, so the cashier never waits for
+     * the stock update and a replayed sale still decrements the stock only once.
+     * A sale that fails to apply fails the batch, which is retried on the next run.
+     *
+     * @param database The database to ship to.
+     * @param checkout Applies the sales.
+     * @return A sink writing to MongoDB.
+     */
+    public static Sink mongoSink(MongoDatabase database, CheckoutService checkout) {
+        Sink upserts = mongoSink(database);
+        return batch -> {
+            List<Entry> others = new ArrayList<>(batch.size());
+            for (Entry entry : batch) {
+                if ("transaction".equals(entry.collection()) && "sale".equals(entry.document().getString("type"))) {
+                    checkout.record(entry.key(), entry.document());
+                } else {
+                    others.add(entry);
+                }
+            }
+            if (!others.isEmpty()) {
+                upserts.ship(others);
+            }
+        };
+    }
+
+    /**
+     * Appends a transaction under a freshly generated idempotency key.
+     *
+     * @param collection  The collection the transaction belongs to.
+     * @param transaction The transaction document.
+     * @return A future completed with the idempotency key once the entry is durable on local disk.
+     * @see #append(String, String, Document)
+     */
+    public CompletableFuture<String> append(String collection, Document transaction) {
+        return append(UUID.randomUUID().toString(), collection, transaction);
+    }
+
+    /**
+     * Appends a transaction under the given idempotency key.
+     * <p>
+     * The returned future completes once the group containing this entry has been forced to disk;
+     * shipping to MongoDB happens afterwards in the background.
+     * Appending the same key twice results in a single stored document.
+     *
+     * @param key         The idempotency key.
+     * @param collection  The collection the transaction belongs to.
+     * @param transaction The transaction document.
+     * @return A future completed with the idempotency key once the entry is durable on local disk.
+     * @throws IllegalStateException If the journal has been closed.
+     */
+    public CompletableFuture<String> append(String key, String collection, Document transaction) {
+        CompletableFuture<String> done = new CompletableFuture<>();
+        // Checked and enqueued under the lock close() takes, so no append can land behind the close marker
+        synchronized (appendQueue) {
+            if (closed) {
+                throw new IllegalStateException("Transaction journal is closed");
+            }
+            appendQueue.add(new Pending(new Entry(key, collection, transaction), done));
+        }
+        return done;
+    }
+
+    /**
+     * Returns the number of durable entries that have not yet been acknowledged by the sink.
+     *
+     * @return The number of entries waiting to be shipped.
+     */
+    public int pendingShipments() {
+        return unshipped.size();
+    }
+
+    /**
+     * Stops accepting appends, commits whatever is queued, makes a final shipping attempt and closes the segment.
+     * Entries that could not be shipped stay on disk and are replayed by the next {@link #open(Path, Sink)}.
+     */
+    @Override
+    public void close() {
+        synchronized (appendQueue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // The writer is stopped with a marker rather than an interrupt, which would close the FileChannel
+            appendQueue.add(CLOSE_MARKER);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Should the writer have stopped early, fail whatever it left behind rather than leave callers waiting
+        List<Pending> leftovers = new ArrayList<>();
+        appendQueue.drainTo(leftovers);
+        for (Pending pending : leftovers) {
+            if (pending != CLOSE_MARKER) {
+                pending.done().completeExceptionally(new IllegalStateException("Transaction journal is closed"));
+            }
+        }
+        shipper.shutdown();
+        try {
+            shipper.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        shipPending();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close transaction journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writer loop: waits for an append, drains everything else that is queued and commits it as one group.
+     * The loop ends when it reaches the {@link #CLOSE_MARKER} queued by {@link #close()}.
+     */
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                group.add(appendQueue.take());
+                appendQueue.drainTo(group, MAX_GROUP - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            running = !group.remove(CLOSE_MARKER);
+            if (!running) {
+                // Commit whatever arrived before close() as part of the final group
+                appendQueue.drainTo(group);
+                group.remove(CLOSE_MARKER);
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Writes a group of entries with one write and one fsync, then completes their futures.
+     *
+     * @param group The entries to commit.
+     */
+    private void commit(List<Pending> group) {
+        try {
+            List<ByteBuffer> records = new ArrayList<>(group.size());
+            long total = 0;
+            for (Pending pending : group) {
+                ByteBuffer record = encode(pending.entry());
+                records.add(record);
+                total += record.remaining();
+            }
+
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            long written = 0;
+            while (written < total) {
+                written += channel.write(buffers);
+            }
+            channel.force(false);
+
+            // Only after the fsync are the entries durable: hand them to the shipper and release the callers
+            for (int i = 0; i < group.size(); i++) {
+                position += records.get(i).limit();
+                unshipped.add(new Located(group.get(i).entry(), segment, position));
+            }
+            for (Pending pending : group) {
+                pending.done().complete(pending.entry().key());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Drop whatever part of the group reached the segment, so the failed entries are never replayed
+            // and the next group starts where the last durable record ends
+            try {
+                channel.truncate(position);
+                channel.position(position);
+            } catch (IOException rollback) {
+                System.err.println("Could not roll back journal segment " + segment + ": " + rollback.getMessage());
+            }
+            for (Pending pending : group) {
+                pending.done().completeExceptionally(e);
+            }
+            return;
+        }
+
+        // The group is durable at this point, so a failed rotation must not roll it back
+        if (position >= SEGMENT_BYTES) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                System.err.println("Could not start a new journal segment, continuing in segment " + segment + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ships the oldest unacknowledged entries in batches and advances the checkpoint after each success.
+     * A failed batch stays queued; the next attempt is delayed and ships half as many entries, and an entry that
+     * keeps failing on its own is parked.
+     */
+    private void shipPending() {
+        while (!unshipped.isEmpty()) {
+            List<Located> batch = new ArrayList<>(shipBatch);
+            for (Located located : unshipped) {
+                batch.add(located);
+                if (batch.size() == shipBatch) {
+                    break;
+                }
+            }
+            try {
+                sink.ship(batch.stream().map(Located::entry).toList());
+            } catch (Exception e) {
+                if (batch.size() == 1 && !isUnavailable(e) && ++entryFailures >= MAX_ENTRY_ATTEMPTS) {
+                    park(batch.getFirst(), e);
+                    continue;
+                }
+                shipFailures++;
+                shipBatch = Math.max(1, batch.size() / 2);
+                long backoff = Math.min(MAX_SHIP_BACKOFF_MS, SHIP_INTERVAL_MS << Math.min(shipFailures, 16));
+                nextShipMillis = System.currentTimeMillis() + backoff;
+                System.err.println("Transaction shipping failed, retrying in " + backoff + " ms: " + e.getMessage());
+                return;
+            }
+
+            shipBatch = Math.min(SHIP_BATCH, shipBatch * 2);
+            shipFailures = 0;
+            entryFailures = 0;
+            nextShipMillis = 0;
+            acknowledge(batch.size(), batch.getLast());
+        }
+    }
+
+    /**
+     * Sets an entry the sink keeps rejecting aside in {@code journal.parked}, in the segment record layout, and
+     * acknowledges it so the entries behind it can be shipped.
+     * The entry stays queued if it cannot be written there.
+     *
+     * @param located The entry to park, which must be the oldest unshipped one.
+     * @param error   The last failure of the sink.
+     */
+    private void park(Located located, Exception error) {
+        try (FileChannel parked = FileChannel.open(parkedPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer record = encode(located.entry());
+            while (record.hasRemaining()) {
+                parked.write(record);
+            }
+            parked.force(false);
+        } catch (IOException e) {
+            System.err.println("Could not park journal entry " + located.entry().key() + ": " + e.getMessage());
+            nextShipMillis = System.currentTimeMillis() + MAX_SHIP_BACKOFF_MS;
+            return;
+        }
+        System.err.println("Parked journal entry " + located.entry().key() + " after " + MAX_ENTRY_ATTEMPTS
+                + " failed attempts: " + error.getMessage());
+        entryFailures = 0;
+        acknowledge(1, located);
+    }
+
+    /**
+     * Removes the oldest shipped entries from the queue and records the position past the last one.
+     *
+     * @param count The number of entries shipped.
+     * @param last  The last entry shipped.
+     */
+    private void acknowledge(int count, Located last) {
+        for (int i = 0; i < count; i++) {
+            unshipped.pollFirst();
+        }
+        try {
+            writeCheckpoint(last.segment(), last.endOffset());
+            deleteSegmentsBefore(last.segment());
+        } catch (IOException e) {
+            // Shipping succeeded; a stale checkpoint only means a harmless idempotent replay
+            System.err.println("Failed to record journal checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells whether a shipping failure means the database could not be reached, in which case every entry would
+     * fail alike and none of them is to blame.
+     */
+    private static boolean isUnavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoSocketException || cause instanceof MongoTimeoutException
+                    || cause instanceof MongoNotPrimaryException || cause instanceof MongoNodeIsRecoveringException
+                    || cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof MongoException mongo
+                    && (mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+                    || mongo.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the segments after the checkpoint, queues their entries for shipping and opens the tail for appends.
+     *
+     * @throws IOException If a segment cannot be read or truncated.
+     */
+    private void recover() throws IOException {
+        long[] checkpoint = readCheckpoint();
+        List<Long> segments = listSegments();
+        for (long id : segments) {
+            if (id < checkpoint[0]) {
+                Files.deleteIfExists(segmentPath(id));
+                continue;
+            }
+            long start = id == checkpoint[0] ? checkpoint[1] : 0;
+            long validEnd = replaySegment(id, start);
+            try (FileChannel file = FileChannel.open(segmentPath(id), StandardOpenOption.WRITE)) {
+                if (file.size() > validEnd) {
+                    System.err.println("Truncating torn journal record in " + segmentPath(id) + " at " + validEnd);
+                    file.truncate(validEnd);
+                    file.force(true);
+                }
+            }
+        }
+
+        segment = segments.isEmpty() ? Math.max(checkpoint[0], 1) : segments.getLast();
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        position = channel.size();
+        channel.position(position);
+        if (!unshipped.isEmpty()) {
+            System.out.println("Replaying " + unshipped.size() + " unacknowledged journal entries");
+        }
+    }
+
+    /**
+     * Reads every valid record of a segment from the given offset and queues it for shipping.
+     *
+     * @param id    The segment number.
+     * @param start The offset of the first unacknowledged record.
+     * @return The offset just past the last valid record.
+     * @throws IOException If the segment cannot be read.
+     */
+    private long replaySegment(long id, long start) throws IOException {
+        try (FileChannel file = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+            long offset = start;
+            long size = file.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (offset + HEADER_BYTES <= size) {
+                header.clear();
+                file.read(header, offset);
+                header.flip();
+                int length = header.getInt();
+                int crc = header.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || offset + HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                file.read(payload, offset + HEADER_BYTES);
+                if (checksum(payload.array()) != crc) {
+                    break;
+                }
+                offset += HEADER_BYTES + length;
+                unshipped.add(new Located(decode(payload.array()), id, offset));
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Starts the next segment and closes the current one.
+     * The next segment is opened first, so a failure leaves the current segment open for appends.
+     *
+     * @throws IOException If the new segment cannot be created.
+     */
+    private void rotate() throws IOException {
+        FileChannel next = FileChannel.open(segmentPath(segment + 1), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileChannel previous = channel;
+        channel = next;
+        segment++;
+        position = 0;
+        try {
+            previous.close();
+        } catch (IOException e) {
+            // Everything in it was forced to disk before the rotation
+            System.err.println("Failed to close journal segment " + (segment - 1) + ": " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        Document wrapper = new Document("k", entry.key()).append("c", entry.collection()).append("d", entry.document());
+        RawBsonDocument raw = new RawBsonDocument(wrapper, CODEC);
+        ByteBuffer bson = raw.getByteBuffer().asNIO();
+        byte[] payload = new byte[bson.remaining()];
+        bson.get(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        return record;
+    }
+
+    private static Entry decode(byte[] payload) {
+        Document wrapper = new RawBsonDocument(payload).decode(CODEC);
+        return new Entry(wrapper.getString("k"), wrapper.getString("c"), wrapper.get("d", Document.class));
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("journal-%010d.log", id));
+    }
+
+    private Path checkpointPath() {
+        return directory.resolve("journal.ack");
+    }
+
+    private Path parkedPath() {
+        return directory.resolve("journal.parked");
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("journal-") && name.endsWith(".log"))
+                    .map(name -> Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path path = checkpointPath();
+        if (!Files.exists(path)) {
+            return new long[]{0, 0};
+        }
+        String[] parts = Files.readString(path, StandardCharsets.UTF_8).trim().split(" ");
+        return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+    }
+
+    private void writeCheckpoint(long id, long offset) throws IOException {
+        // Write to a temporary file and atomically rename so a crash never leaves a half-written checkpoint
+        Path temporary = directory.resolve("journal.ack.tmp");
+        Files.writeString(temporary, id + " " + offset, StandardCharsets.UTF_8);
+        Files.move(temporary, checkpointPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteSegmentsBefore(long id) throws IOException {
+        for (long old : listSegments()) {
+            if (old < id) {
+                Files.deleteIfExists(segmentPath(old));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.club;
+
+import com.mongodb.MongoException;
+import com.mongodb.ReadConcern;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs multi-document transactions with a bounded number of retries.
+ * <p>
+ * When two terminals write the same document at the same time, one of the transactions fails with a write
+ * conflict labelled {@code TransientTransactionError}; the whole transaction is then retried after a short,
+ * jittered backoff.
+ * A commit whose outcome is unknown ({@code UnknownTransactionCommitResult}) is retried on its own, as
+ * committing twice is safe.
+ * Unlike {@link ClientSession#withTransaction}, which keeps retrying for up to two minutes, the runner gives up
+ * after a fixed number of attempts so a checkout under heavy contention fails fast instead of stalling the
+ * counter.
+ * <p>
+ * Transactions need a replica set or an Atlas cluster.
+ */
+public class TransactionRunner {
+    private static final TransactionOptions OPTIONS = TransactionOptions.builder()
+            .readConcern(ReadConcern.SNAPSHOT)
+            .writeConcern(WriteConcern.MAJORITY)
+            .build();
+    private static final long MAX_BACKOFF_MILLIS = 100;
+
+    private final MongoClient client;
+    private final int maxAttempts;
+    private final LongAdder retries = new LongAdder();
+
+    /**
+     * Creates a runner on the given client.
+     *
+     * @param client      The client to start sessions on.
+     * @param maxAttempts The maximum number of attempts of one transaction, including the first.
+     */
+    public TransactionRunner(MongoClient client, int maxAttempts) {
+        this.client = client;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Runs the body in a transaction and commits it, retrying on transient errors.
+     * An exception thrown by the body aborts the transaction and, unless it is transient, is rethrown as is.
+     *
+     * @param body The transaction body; every operation must use the given session.
+     * @param <T>  The result type.
+     * @return The result of the body from the attempt that committed.
+     * @throws MongoException If the transaction still fails after the last attempt.
+     */
+    public <T> T run(Function<ClientSession, T> body) {
+        try (ClientSession session = client.startSession()) {
+            for (int attempt = 1; ; attempt++) {
+                session.startTransaction(OPTIONS);
+                try {
+                    T result = body.apply(session);
+                    commit(session);
+                    return result;
+                } catch (RuntimeException e) {
+                    if (session.hasActiveTransaction()) {
+                        session.abortTransaction();
+                    }
+                    if (!(e instanceof MongoException mongoException)
+                            || !mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+                            || attempt >= maxAttempts) {
+                        throw e;
+                    }
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of transactions retried so far.
+     *
+     * @return The retry count.
+     */
+    public long retries() {
+        return retries.sum();
+    }
+
+    private void commit(ClientSession session) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                session.commitTransaction();
+                return;
+            } catch (MongoException e) {
+                if (!e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL) || attempt >= maxAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sleeps for a random time up to an exponentially growing bound, so conflicting terminals do not retry in step.
+     */
+    private static void backoff(int attempt) {
+        long bound = Math.min(MAX_BACKOFF_MILLIS, 1L << Math.min(attempt, 10));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}